@@ -55,6 +55,7 @@ public abstract class AbstractComponent implements Component {
 	private boolean has_polled;
 	private float value;
 	private float event_value;
+	private int index = -1;
     
     /**
      * Protected constructor
@@ -110,6 +111,18 @@ public abstract class AbstractComponent implements Component {
         return value;
     }
 
+	/**
+	 * Returns the position of this component in the components of the first
+	 * AbstractController created with it, or -1 if there is none
+	 */
+	public final int getIndex() {
+		return index;
+	}
+
+	final void setIndex(int index) {
+		this.index = index;
+	}
+
 	final void resetHasPolled() {
 		has_polled = false;
 	}
@@ -117,6 +130,15 @@ public abstract class AbstractComponent implements Component {
     final void setPollData(float value) {
         this.value = value;
     }
+
+	/**
+	 * Set the poll data of an absolute component from bulk device state,
+	 * so that getPollData() won't poll the component itself.
+	 */
+	final void setPolledData(float value) {
+		this.value = value;
+		this.has_polled = true;
+	}
  
     final float getEventValue() {
         return event_value;
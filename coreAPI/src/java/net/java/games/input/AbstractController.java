@@ -38,10 +38,15 @@
  *****************************************************************************/
 package net.java.games.input;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * An AbstractController is a skeleton implementation of a controller that
@@ -50,7 +55,38 @@ import java.io.IOException;
 public abstract class AbstractController implements Controller {
 	public final static int EVENT_QUEUE_DEPTH = 32;
 	
-	private final static Event event = new Event();
+	/* Scratch events for poll(), owned by the controller so controllers can be polled in parallel */
+	private final Event event = new Event();
+	private final Event coalesced_event = new Event();
+
+	/* Events read from the device, queued, dropped and coalesced by the queue in the current poll() */
+	private int poll_read;
+	private int poll_events;
+	private int poll_dropped;
+	private int poll_coalesced;
+
+	/* Relative deltas summed per component index since the last button or absolute event,
+	 * null unless coalescing is enabled. Only accessed by poll()
+	 */
+	private float[] coalesced_values;
+	private long[] coalesced_nanos;
+	private Event.Clock[] coalesced_clocks;
+	private long[] coalesced_frames;
+	private boolean[] coalesced_pending;
+	/* Component indices with pending deltas, in the order of their first event */
+	private int[] coalesced_order;
+	private int num_coalesced;
+
+	/* Reset only the components touched by the previous poll, instead of all of them */
+	private boolean dirty_tracking;
+	/* Component indices that changed in the last poll, tracked when dirty_tracking is
+	 * set or the changed indices were asked for. Only accessed by poll()
+	 */
+	private boolean[] touched;
+	private int[] touched_indices;
+	private int num_touched;
+	/* Whether the current poll() tracks touched components */
+	private boolean tracking;
 	
     /**
      * Human-readable name for this Controller
@@ -72,12 +108,32 @@ public abstract class AbstractController implements Controller {
      */
     private final Rumbler[] rumblers;
 
+	/* Identifier ordinals above this are looked up in id_to_components */
+	private final static int MAX_ORDINAL_TABLE_SIZE = 4096;
+
 	/**
-	 * Map from Component.Identifiers to Components
+	 * Map from Component.Identifiers to Components, for identifiers
+	 * with ordinals too large for ordinal_to_components
 	 */
 	private final Map id_to_components = new HashMap();
 
+	/**
+	 * Table from Component.Identifier ordinals to Components
+	 */
+	private final Component[] ordinal_to_components;
+
 	private EventQueue event_queue = new EventQueue(EVENT_QUEUE_DEPTH);
+	/* The requested size of the event queue, which a growing queue may exceed */
+	private int event_queue_size = EVENT_QUEUE_DEPTH;
+
+	/* Double buffered snapshots, null unless enabled */
+	private ControllerSnapshot[] snapshots;
+	private volatile ControllerSnapshot snapshot;
+	private long poll_count;
+
+	/* Pipeline metrics and their JMX name, null unless enabled */
+	private ControllerMetrics metrics;
+	private ObjectName metrics_name;
     
     /**
      * Protected constructor for a controller containing the specified
@@ -92,9 +148,23 @@ public abstract class AbstractController implements Controller {
         this.components = components;
         this.children = children;
         this.rumblers = rumblers;
+		int table_size = 0;
+		for (int i = 0; i < components.length; i++) {
+			int ordinal = components[i].getIdentifier().getOrdinal();
+			if (ordinal < MAX_ORDINAL_TABLE_SIZE)
+				table_size = Math.max(table_size, ordinal + 1);
+		}
+		this.ordinal_to_components = new Component[table_size];
 		// process from last to first to let earlier listed Components get higher priority
 		for (int i = components.length - 1; i >= 0; i--) {
-			id_to_components.put(components[i].getIdentifier(), components[i]);
+			Component.Identifier id = components[i].getIdentifier();
+			if (id.getOrdinal() < table_size)
+				ordinal_to_components[id.getOrdinal()] = components[i];
+			else
+				id_to_components.put(id, components[i]);
+			// the first controller of a shared component owns its index
+			if (components[i] instanceof AbstractComponent && components[i].getIndex() == -1)
+				((AbstractComponent)components[i]).setIndex(i);
 		}
 	}
 
@@ -126,6 +196,11 @@ public abstract class AbstractController implements Controller {
      * if no component with the specified type could be found.
      */
     public final Component getComponent(Component.Identifier id) {
+		if (id == null)
+			return null;
+		int ordinal = id.getOrdinal();
+		if (ordinal < ordinal_to_components.length)
+			return ordinal_to_components[ordinal];
 		return (Component)id_to_components.get(id);
     }
 
@@ -177,9 +252,44 @@ public abstract class AbstractController implements Controller {
      * Creates a new EventQueue. Events in old queue are lost.
      */
 	public final void setEventQueueSize(int size) {
+		setEventQueueSize(size, event_queue.isLockFree());
+	}
+
+    /**
+     * Creates a new EventQueue, optionally in lock free mode. Events in old queue are lost.
+     * A lock free queue must only be drained from a single thread. The overflow policy
+     * of the old queue is kept, except that a lock free queue always uses
+     * EventQueue.OverflowPolicy.DROP_NEWEST, the only policy it supports.
+     */
+	public final void setEventQueueSize(int size, boolean lock_free) {
+		EventQueue old_queue = event_queue;
+		if (lock_free)
+			setEventQueue(size, true, EventQueue.OverflowPolicy.DROP_NEWEST, size);
+		else
+			setEventQueue(size, false, old_queue.getOverflowPolicy(), Math.max(size, old_queue.getMaxCapacity()));
+	}
+
+    /**
+     * Creates a new EventQueue of the current size with the given overflow policy.
+     * Events in old queue are lost. A lock free queue only supports
+     * EventQueue.OverflowPolicy.DROP_NEWEST; switch to a locking queue with
+     * setEventQueueSize(size, false) first to use another policy.
+     * @param max_size The size the queue may grow to with EventQueue.OverflowPolicy.GROW
+     * @throws IllegalArgumentException if the queue is lock free and the policy isn't DROP_NEWEST
+     */
+	public final void setEventQueueOverflowPolicy(EventQueue.OverflowPolicy overflow_policy, int max_size) {
+		setEventQueue(event_queue_size, event_queue.isLockFree(), overflow_policy, max_size);
+	}
+
+	private final void setEventQueue(int size, boolean lock_free, EventQueue.OverflowPolicy overflow_policy, int max_size) {
 		try {
+			EventQueue new_queue = new EventQueue(size, lock_free, overflow_policy, max_size);
 			setDeviceEventQueueSize(size);
-			event_queue = new EventQueue(size);
+			synchronized (this) {
+				new_queue.setMetrics(metrics);
+				event_queue = new_queue;
+				event_queue_size = size;
+			}
 		} catch (IOException e) {
 			ControllerEnvironment.logln("Failed to create new event queue of size " + size + ": " + e);
 		}
@@ -195,45 +305,301 @@ public abstract class AbstractController implements Controller {
 		return event_queue;
 	}
 
+	/**
+	 * Enable or disable collecting ControllerMetrics for this controller. Enabled
+	 * metrics are also registered as a platform MBean in the net.java.games.input domain.
+	 * Metrics are disabled by default and cost nothing then.
+	 */
+	public final synchronized void setMetricsEnabled(boolean enabled) {
+		if (enabled && metrics == null) {
+			metrics = new ControllerMetrics(getName());
+			event_queue.setMetrics(metrics);
+			try {
+				metrics_name = new ObjectName("net.java.games.input:type=ControllerMetrics,name=" +
+						ObjectName.quote(getName()) + ",id=" + System.identityHashCode(this));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metrics_name);
+			} catch (JMException e) {
+				ControllerEnvironment.logln("Failed to register controller metrics: " + e);
+				metrics_name = null;
+			}
+		} else if (!enabled && metrics != null) {
+			event_queue.setMetrics(null);
+			metrics = null;
+			if (metrics_name != null) {
+				try {
+					ManagementFactory.getPlatformMBeanServer().unregisterMBean(metrics_name);
+				} catch (JMException e) {
+					ControllerEnvironment.logln("Failed to unregister controller metrics: " + e);
+				}
+				metrics_name = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the metrics of this controller, or null if they are disabled
+	 */
+	public final synchronized ControllerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Enable or disable coalescing relative events. When enabled, the relative events
+	 * of a component between two button or absolute events of the same poll are merged
+	 * into one event carrying their summed value and the latest time. Disabled by default.
+	 */
+	public final synchronized void setRelativeCoalescingEnabled(boolean enabled) {
+		if (enabled && coalesced_values == null) {
+			int size = getComponents().length;
+			coalesced_values = new float[size];
+			coalesced_nanos = new long[size];
+			coalesced_clocks = new Event.Clock[size];
+			coalesced_frames = new long[size];
+			coalesced_pending = new boolean[size];
+			coalesced_order = new int[size];
+			num_coalesced = 0;
+		} else if (!enabled) {
+			coalesced_values = null;
+			coalesced_nanos = null;
+			coalesced_clocks = null;
+			coalesced_frames = null;
+			coalesced_pending = null;
+			coalesced_order = null;
+		}
+	}
+
+	/**
+	 * Enable or disable dirty tracking. With dirty tracking, poll() only resets the
+	 * relative components that moved in the previous poll, and makes only the absolute
+	 * components with new events poll their value again, so the cost of a poll depends on
+	 * the number of events instead of the number of components. This requires a device
+	 * that reports every change of state as an event. Disabled by default.
+	 */
+	public final synchronized void setDirtyTrackingEnabled(boolean enabled) {
+		if (enabled && !dirty_tracking) {
+			// start from a full reset
+			Component[] components = getComponents();
+			for (int i = 0; i < components.length; i++)
+				resetComponent((AbstractComponent)components[i]);
+			clearTouched();
+		}
+		dirty_tracking = enabled;
+	}
+
+	/**
+	 * Enable or disable building a ControllerSnapshot on every poll().
+	 * Snapshots are disabled by default.
+	 */
+	public final synchronized void setSnapshotEnabled(boolean enabled) {
+		if (enabled && snapshots == null) {
+			int size = getComponents().length;
+			snapshots = new ControllerSnapshot[]{new ControllerSnapshot(size), new ControllerSnapshot(size)};
+		} else if (!enabled) {
+			snapshots = null;
+			snapshot = null;
+		}
+	}
+
+	/**
+	 * Returns the snapshot of the last poll(), or null if snapshots are
+	 * disabled or the controller hasn't been polled since they were enabled.
+	 * The snapshot may be read from any thread.
+	 */
+	public final ControllerSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Plugins override this method to return the device the controller reads from,
+	 * so that controllers sharing a device are polled together
+	 */
+	protected Object getBackingDevice() {
+		return this;
+	}
+
 	protected abstract boolean getNextDeviceEvent(Event event) throws IOException;
 
 	protected void pollDevice() throws IOException {
 	}
 
-	/* poll() is synchronized to protect the static event */
+	/**
+	 * Poll the device and queue its events. poll() is safe to call in parallel
+	 * on different controllers; calls on the same controller are serialized.
+	 */
 	public synchronized boolean poll() {
+		return poll(null) >= 0;
+	}
+
+	/**
+	 * Poll the device like poll() and report which components had events.
+	 *
+	 * @param changed_indices Filled with the indices, in getComponents(), of the components
+	 * with events in this poll, in the order of their first event. Indices that don't
+	 * fit are left out.
+	 * @return The number of components with events, which may exceed the length of
+	 * changed_indices, or -1 if the controller is no longer valid
+	 */
+	public final synchronized int poll(int[] changed_indices) {
 		Component[] components = getComponents();
+		tracking = dirty_tracking || changed_indices != null;
+		poll_read = 0;
+		poll_events = 0;
+		poll_dropped = 0;
+		poll_coalesced = 0;
 		try {
-			pollDevice();
-			for (int i = 0; i < components.length; i++) {
-				AbstractComponent component = (AbstractComponent)components[i];
-				if (component.isRelative()) {
-					component.setPollData(0);
-				} else {
-					// Let the component poll itself lazily
-					component.resetHasPolled();
+			// Reset before polling the device, so pollDevice() can set polled state in bulk
+			if (dirty_tracking) {
+				for (int i = 0; i < num_touched; i++) {
+					AbstractComponent component = (AbstractComponent)components[touched_indices[i]];
+					if (component.isRelative())
+						component.setPollData(0);
 				}
+			} else {
+				for (int i = 0; i < components.length; i++)
+					resetComponent((AbstractComponent)components[i]);
 			}
-			while (getNextDeviceEvent(event)) {
-				AbstractComponent component = (AbstractComponent)event.getComponent();
-				float value = event.getValue();
-				if (component.isRelative()) {
-					if (value == 0)
-						continue;
-					component.setPollData(component.getPollData() + value);
-				} else {
-					if (value == component.getEventValue())
-						continue;
-					component.setEventValue(value);
-				}
-				if (!event_queue.isFull())
-					event_queue.add(event);
+			clearTouched();
+			pollDevice();
+			while (getNextDeviceEvent(event))
+				dispatchEvent(event);
+			if (coalesced_values != null)
+				flushCoalesced(components);
+			if (metrics != null)
+				metrics.recordPoll(poll_read, poll_events, poll_dropped, poll_coalesced, event_queue.size());
+			poll_count++;
+			if (snapshots != null) {
+				ControllerSnapshot back = snapshots[(int)(poll_count & 1)];
+				back.update(components, poll_count);
+				snapshot = back;
 			}
-			return true;
+			if (changed_indices != null)
+				System.arraycopy(touched_indices, 0, changed_indices, 0, Math.min(num_touched, changed_indices.length));
+			return num_touched;
 		} catch (IOException e) {
 			ControllerEnvironment.logln("Failed to poll device: " + e.getMessage());
+			num_coalesced = 0;
+			if (coalesced_pending != null)
+				Arrays.fill(coalesced_pending, false);
+			return -1;
+		}
+	}
+
+	/**
+	 * Apply a device event to its component and queue it. Plugins can call
+	 * this from pollDevice() to deliver events straight into the controller
+	 * queue instead of returning them one at a time from getNextDeviceEvent().
+	 * Must only be called from pollDevice(). The event is copied, so it
+	 * can be reused after the call.
+	 */
+	protected final void dispatchEvent(Event event) {
+		AbstractComponent component = (AbstractComponent)event.getComponent();
+		float value = event.getValue();
+		poll_read++;
+		if (component.isRelative()) {
+			if (value == 0)
+				return;
+			component.setPollData(component.getPollData() + value);
+			if (tracking)
+				touch(component);
+			if (coalesced_values != null && coalesce(component, event))
+				return;
+		} else {
+			if (value == component.getEventValue())
+				return;
+			component.setEventValue(value);
+			if (tracking)
+				touch(component);
+			if (dirty_tracking)
+				component.resetHasPolled();
+			// keep the order of relative motion and button or absolute changes
+			if (coalesced_values != null)
+				flushCoalesced(getComponents());
+		}
+		queueEvent(event);
+	}
+
+	private final static void resetComponent(AbstractComponent component) {
+		if (component.isRelative()) {
+			component.setPollData(0);
+		} else {
+			// Let the component poll itself lazily
+			component.resetHasPolled();
+		}
+	}
+
+	private final void clearTouched() {
+		if (touched == null) {
+			int size = getComponents().length;
+			touched = new boolean[size];
+			touched_indices = new int[size];
+		}
+		for (int i = 0; i < num_touched; i++)
+			touched[touched_indices[i]] = false;
+		num_touched = 0;
+	}
+
+	private final void touch(AbstractComponent component) {
+		int index = indexOf(component);
+		if (index >= 0 && !touched[index]) {
+			touched[index] = true;
+			touched_indices[num_touched++] = index;
+		}
+	}
+
+	private final int indexOf(AbstractComponent component) {
+		Component[] components = getComponents();
+		int index = component.getIndex();
+		if (index >= 0 && index < components.length && components[index] == component)
+			return index;
+		// a component shared with another controller may be indexed by that controller
+		for (int i = 0; i < components.length; i++) {
+			if (components[i] == component)
+				return i;
+		}
+		return -1;
+	}
+
+	private final void queueEvent(Event event) {
+		poll_events++;
+		switch (event_queue.offer(event)) {
+			case EventQueue.QUEUED_DROPPED_OLDEST:
+			case EventQueue.REJECTED:
+				poll_dropped++;
+				break;
+			case EventQueue.COALESCED:
+				poll_coalesced++;
+				break;
+		}
+	}
+
+	/* Add a relative event to the pending delta of its component. Returns false if it can't be coalesced */
+	private final boolean coalesce(AbstractComponent component, Event event) {
+		int index = indexOf(component);
+		if (index < 0)
 			return false;
+		if (!coalesced_pending[index]) {
+			coalesced_pending[index] = true;
+			coalesced_values[index] = 0;
+			coalesced_order[num_coalesced++] = index;
+		}
+		coalesced_values[index] += event.getValue();
+		coalesced_nanos[index] = event.getNanos();
+		coalesced_clocks[index] = event.getClock();
+		coalesced_frames[index] = event.getFrame();
+		return true;
+	}
+
+	/* Queue the pending relative deltas */
+	private final void flushCoalesced(Component[] components) {
+		for (int i = 0; i < num_coalesced; i++) {
+			int index = coalesced_order[i];
+			coalesced_pending[index] = false;
+			if (coalesced_values[index] != 0) {
+				coalesced_event.set(components[index], coalesced_values[index], coalesced_nanos[index], coalesced_clocks[index], coalesced_frames[index]);
+				queueEvent(coalesced_event);
+			}
 		}
-	} 
+		num_coalesced = 0;
+	}
 	
 } // class AbstractController
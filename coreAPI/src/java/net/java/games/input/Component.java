@@ -38,6 +38,8 @@
  *****************************************************************************/
 package net.java.games.input;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * An axis is a single button, slider, or dial, which has a single range.  An
  * axis can hold information for motion (linear or rotational), velocity,
@@ -84,6 +86,20 @@ public interface Component {
      * Returns a human-readable name for this axis.
      */
     public abstract String getName();
+
+    /**
+     * Returns the position of this component in the array returned by
+     * {@link Controller#getComponents} of the controller that owns it,
+     * or -1 if it isn't known. The index is stable for the life of the
+     * controller, so it can be used to keep per component state in plain
+     * arrays. A component shared by several controllers, like those of a
+     * Linux controller combining a joystick and an event device, is owned
+     * by the first controller created with it. The index is only valid
+     * for that controller.
+     */
+    public default int getIndex() {
+        return -1;
+    }
     
     /**
      * Identifiers for different Axes.
@@ -94,12 +110,30 @@ public interface Component {
          * Name of axis type
          */
         private final String name;
+
+        /**
+         * Dense number unique to this identifier instance
+         */
+        private final int ordinal;
+
+        /* The number of identifiers created so far */
+        private static final AtomicInteger num_identifiers = new AtomicInteger();
         
         /**
          * Protected constructor
          */
         protected Identifier(String name) {
             this.name = name;
+            this.ordinal = num_identifiers.getAndIncrement();
+        }
+
+        /**
+         * Returns a small integer unique to this identifier, assigned in
+         * order of creation. Used to look up components by identity
+         * without hashing.
+         */
+        final int getOrdinal() {
+            return ordinal;
         }
         
         /**
@@ -0,0 +1,312 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+package net.java.games.input;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event pipeline metrics of a controller, enabled with
+ * AbstractController.setMetricsEnabled(true).
+ * <p>
+ * The poll metrics count the events read from the device in each poll,
+ * the events queued, which are fewer when unchanged values are filtered
+ * out or relative events are coalesced, the events lost and the events
+ * merged into other events by the overflow policy of the full event queue,
+ * and the highest number of events the queue held after a poll. The events
+ * per poll histogram counts the polls by the number of events read.
+ * The latency histogram records, for every event consumed from the event
+ * queue, the time from the event timestamp to the moment it was consumed.
+ * Events stamped with Event.Clock.MONOTONIC are compared with
+ * System.nanoTime(). Events stamped with Event.Clock.REALTIME are compared
+ * with the wall clock as of the last reset, advanced by System.nanoTime(),
+ * so their latencies are off by any adjustment of the system time since.
+ * Events of other clocks aren't recorded.
+ * <p>
+ * Both histograms count in buckets of powers of two: bucket i holds the
+ * values from 2^(i-1) up to 2^i - 1, bucket 0 values of zero or less.
+ */
+public final class ControllerMetrics implements ControllerMetricsMBean {
+	public final static int NUM_BUCKETS = 64;
+	public final static int NUM_EVENT_BUCKETS = 32;
+
+	private final String controller_name;
+	private final AtomicLongArray latency_buckets = new AtomicLongArray(NUM_BUCKETS);
+	/* Only written by the polling thread */
+	private final AtomicLongArray events_per_poll_buckets = new AtomicLongArray(NUM_EVENT_BUCKETS);
+	/* The wall clock in nanoseconds since the epoch minus System.nanoTime() */
+	private volatile long realtime_offset = getRealtimeOffset();
+
+	/* Poll metrics are only written by the polling thread, with the controller locked */
+	private volatile long poll_count;
+	private volatile long event_count;
+	private volatile long queued_count;
+	private volatile int max_events_per_poll;
+	private volatile long dropped_count;
+	private volatile long coalesced_count;
+	private volatile int queue_high_water_mark;
+
+	private volatile ControllerMetricsListener[] listeners = new ControllerMetricsListener[0];
+
+	ControllerMetrics(String controller_name) {
+		this.controller_name = controller_name;
+	}
+
+	public final String getControllerName() {
+		return controller_name;
+	}
+
+	public final synchronized void addListener(ControllerMetricsListener listener) {
+		ControllerMetricsListener[] new_listeners = new ControllerMetricsListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, new_listeners, 0, listeners.length);
+		new_listeners[listeners.length] = listener;
+		listeners = new_listeners;
+	}
+
+	public final synchronized void removeListener(ControllerMetricsListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				ControllerMetricsListener[] new_listeners = new ControllerMetricsListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, new_listeners, 0, i);
+				System.arraycopy(listeners, i + 1, new_listeners, i, listeners.length - i - 1);
+				listeners = new_listeners;
+				return;
+			}
+		}
+	}
+
+	/* Called by AbstractController.poll() */
+	final void recordPoll(int num_events, int num_queued, int num_dropped, int num_coalesced, int queue_size) {
+		poll_count++;
+		event_count += num_events;
+		queued_count += num_queued;
+		dropped_count += num_dropped;
+		coalesced_count += num_coalesced;
+		if (num_events > max_events_per_poll)
+			max_events_per_poll = num_events;
+		events_per_poll_buckets.incrementAndGet(getBucket(num_events, NUM_EVENT_BUCKETS));
+		if (queue_size > queue_high_water_mark)
+			queue_high_water_mark = queue_size;
+		ControllerMetricsListener[] current_listeners = listeners;
+		for (int i = 0; i < current_listeners.length; i++)
+			current_listeners[i].polled(this, num_events, num_dropped);
+	}
+
+	/* Called by EventQueue when an event is consumed */
+	final void recordConsumed(Event.Clock clock, long nanos, long now) {
+		long latency;
+		if (clock == Event.Clock.MONOTONIC)
+			latency = now - nanos;
+		else if (clock == Event.Clock.REALTIME)
+			latency = now + realtime_offset - nanos;
+		else
+			return;
+		latency_buckets.incrementAndGet(getBucket(latency, NUM_BUCKETS));
+	}
+
+	private final static int getBucket(long value, int num_buckets) {
+		int bucket = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+		return Math.min(bucket, num_buckets - 1);
+	}
+
+	private final static long getRealtimeOffset() {
+		// keep the sample taken in the shortest window, the first may load classes
+		long offset = 0;
+		long min_window = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long before = System.nanoTime();
+			Instant now = Instant.now();
+			long after = System.nanoTime();
+			if (after - before < min_window) {
+				min_window = after - before;
+				offset = now.getEpochSecond()*1000000000L + now.getNano() - (before + (after - before)/2);
+			}
+		}
+		return offset;
+	}
+
+	public final long getPollCount() {
+		return poll_count;
+	}
+
+	/**
+	 * Returns the number of events read from the device, before unchanged
+	 * values are filtered out and relative events are coalesced
+	 */
+	public final long getEventCount() {
+		return event_count;
+	}
+
+	/**
+	 * Returns the number of events offered to the event queue, after
+	 * filtering and coalescing
+	 */
+	public final long getQueuedEventCount() {
+		return queued_count;
+	}
+
+	public final double getMeanEventsPerPoll() {
+		long polls = poll_count;
+		return polls == 0 ? 0 : (double)event_count/polls;
+	}
+
+	public final int getMaxEventsPerPoll() {
+		return max_events_per_poll;
+	}
+
+	/**
+	 * Returns a copy of the events per poll histogram, indexed by bucket
+	 */
+	public final long[] getEventsPerPollHistogram() {
+		return copy(events_per_poll_buckets);
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the given fraction of the
+	 * polls by events read, or 0 if there were none
+	 */
+	public final long getEventsPerPollPercentile(double fraction) {
+		return getPercentile(getEventsPerPollHistogram(), fraction);
+	}
+
+	/**
+	 * Returns the number of events lost because the event queue was full, either
+	 * the queued event or, with EventQueue.OverflowPolicy.DROP_OLDEST, the oldest
+	 */
+	public final long getDroppedEventCount() {
+		return dropped_count;
+	}
+
+	/**
+	 * Returns the number of relative events merged into the newest queued event
+	 * because the event queue was full, with EventQueue.OverflowPolicy.COALESCE_RELATIVE
+	 */
+	public final long getQueueCoalescedEventCount() {
+		return coalesced_count;
+	}
+
+	public final int getQueueHighWaterMark() {
+		return queue_high_water_mark;
+	}
+
+	/**
+	 * Returns a copy of the latency histogram, indexed by bucket
+	 */
+	public final long[] getLatencyHistogram() {
+		return copy(latency_buckets);
+	}
+
+	private final static long[] copy(AtomicLongArray buckets) {
+		long[] histogram = new long[buckets.length()];
+		for (int i = 0; i < histogram.length; i++)
+			histogram[i] = buckets.get(i);
+		return histogram;
+	}
+
+	public final long getLatencySampleCount() {
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			count += latency_buckets.get(i);
+		return count;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the given fraction of the
+	 * latency samples, or 0 if there are none
+	 */
+	public final long getLatencyPercentileNanos(double fraction) {
+		return getPercentile(getLatencyHistogram(), fraction);
+	}
+
+	private final static long getPercentile(long[] histogram, double fraction) {
+		long count = 0;
+		for (int i = 0; i < histogram.length; i++)
+			count += histogram[i];
+		if (count == 0)
+			return 0;
+		long target = (long)Math.ceil(count*fraction);
+		long seen = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+			if (seen >= target && histogram[i] != 0)
+				return getBucketLimit(i);
+		}
+		return getBucketLimit(histogram.length - 1);
+	}
+
+	private final static long getBucketLimit(int bucket) {
+		return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	public final long getMedianLatencyNanos() {
+		return getLatencyPercentileNanos(0.5);
+	}
+
+	public final long getPercentile99LatencyNanos() {
+		return getLatencyPercentileNanos(0.99);
+	}
+
+	public final long getMaxLatencyNanos() {
+		return getLatencyPercentileNanos(1);
+	}
+
+	/**
+	 * Clear all metrics. Samples recorded while resetting may be lost.
+	 */
+	public final void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			latency_buckets.set(i, 0);
+		for (int i = 0; i < NUM_EVENT_BUCKETS; i++)
+			events_per_poll_buckets.set(i, 0);
+		realtime_offset = getRealtimeOffset();
+		poll_count = 0;
+		event_count = 0;
+		queued_count = 0;
+		max_events_per_poll = 0;
+		dropped_count = 0;
+		coalesced_count = 0;
+		queue_high_water_mark = 0;
+	}
+
+	public final String toString() {
+		return "ControllerMetrics: " + controller_name + " | polls = " + poll_count + " | events = " + event_count +
+			" | queued = " + queued_count + " | dropped = " + dropped_count + " | queue high water mark = " + queue_high_water_mark +
+			" | median latency = " + getMedianLatencyNanos() + " ns";
+	}
+}
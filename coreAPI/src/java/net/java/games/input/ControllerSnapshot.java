@@ -0,0 +1,173 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+package net.java.games.input;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The component values of a controller after one poll(), readable
+ * from any thread without locking the controller.
+ * <p>
+ * A controller keeps two snapshots and fills them in turn on every
+ * poll, so a snapshot obtained from AbstractController.getSnapshot()
+ * is reused two polls later. Reads are therefore guarded by a sequence
+ * counter: copyValues() retries until it has copied a frame that was
+ * not overwritten meanwhile, and returns the poll count of that same
+ * frame. Separate getValue() and getPollCount() calls may see different
+ * frames.
+ */
+public final class ControllerSnapshot {
+	private final static VarHandle VERSION;
+	static {
+		try {
+			VERSION = MethodHandles.lookup().findVarHandle(ControllerSnapshot.class, "version", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final float[] values;
+	/* The component values of the poll being published, gathered before the write starts */
+	private final float[] poll_values;
+	private long nanos;
+	private long poll_count;
+
+	/* Odd while the snapshot is being written */
+	private volatile long version;
+
+	ControllerSnapshot(int size) {
+		values = new float[size];
+		poll_values = new float[size];
+	}
+
+	/**
+	 * Returns the number of component values, one per controller component
+	 */
+	public final int getSize() {
+		return values.length;
+	}
+
+	/**
+	 * Copy the component values of a consistent frame into values, in the
+	 * order of the controller's getComponents().
+	 *
+	 * @param values The array to copy into, at least getSize() long
+	 * @return The number of the poll the copied values are from, counting from 1
+	 */
+	public final long copyValues(float[] values) {
+		return copyValues(values, null);
+	}
+
+	/**
+	 * Copy the component values of a consistent frame like copyValues(values),
+	 * along with the time the frame was polled.
+	 *
+	 * @param values The array to copy into, at least getSize() long
+	 * @param nanos If not null, receives the System.nanoTime() at which the
+	 * copied frame was polled in its first element
+	 * @return The number of the poll the copied values are from, counting from 1
+	 */
+	public final long copyValues(float[] values, long[] nanos) {
+		if (values.length < this.values.length)
+			throw new IllegalArgumentException("Array too small for " + this.values.length + " values");
+		while (true) {
+			long v = (long)VERSION.getAcquire(this);
+			if ((v & 1) == 0) {
+				System.arraycopy(this.values, 0, values, 0, this.values.length);
+				long frame_nanos = this.nanos;
+				long frame_poll_count = poll_count;
+				VarHandle.loadLoadFence();
+				if ((long)VERSION.getOpaque(this) == v) {
+					if (nanos != null)
+						nanos[0] = frame_nanos;
+					return frame_poll_count;
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Returns the value of a single component in the current frame
+	 */
+	public final float getValue(int index) {
+		while (true) {
+			long v = (long)VERSION.getAcquire(this);
+			if ((v & 1) == 0) {
+				float result = values[index];
+				VarHandle.loadLoadFence();
+				if ((long)VERSION.getOpaque(this) == v)
+					return result;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Returns the number of the poll this snapshot currently holds, counting from 1
+	 */
+	public final long getPollCount() {
+		while (true) {
+			long v = (long)VERSION.getAcquire(this);
+			if ((v & 1) == 0) {
+				long result = poll_count;
+				VarHandle.loadLoadFence();
+				if ((long)VERSION.getOpaque(this) == v)
+					return result;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	/* Only called by the polling thread, with the controller locked */
+	final void update(Component[] components, long poll_count) {
+		// getPollData() can poll the device, so readers only wait for the copy
+		for (int i = 0; i < poll_values.length; i++)
+			poll_values[i] = components[i].getPollData();
+		long frame_nanos = System.nanoTime();
+		long v = version;
+		VERSION.setOpaque(this, v + 1);
+		VarHandle.storeStoreFence();
+		System.arraycopy(poll_values, 0, values, 0, values.length);
+		this.nanos = frame_nanos;
+		this.poll_count = poll_count;
+		VERSION.setRelease(this, v + 2);
+	}
+}
@@ -42,21 +42,42 @@ public final class Event {
     private Component component;
     private float value;
 	private long nanos;
+	private Clock clock = Clock.UNKNOWN;
+	private long frame = -1;
 
     public final void set(Event other) {
-		this.set(other.getComponent(), other.getValue(), other.getNanos());
+		this.set(other.getComponent(), other.getValue(), other.getNanos(), other.getClock(), other.getFrame());
     }
 
     public final void set(Component component, float value, long nanos) {
+		set(component, value, nanos, Clock.UNKNOWN);
+    }
+
+    public final void set(Component component, float value, long nanos, Clock clock) {
+		set(component, value, nanos, clock, -1);
+    }
+
+    public final void set(Component component, float value, long nanos, Clock clock, long frame) {
 		this.component = component;
 		this.value = value;
 		this.nanos = nanos;
+		this.clock = clock;
+		this.frame = frame;
     }
 
 	public final Component getComponent() {
 		return component;
 	}
 
+	/**
+	 * Return the index of the event component in the components of the
+	 * controller that owns it, or -1 if it isn't known.
+	 * @see Component#getIndex
+	 */
+	public final int getComponentIndex() {
+		return component != null ? component.getIndex() : -1;
+	}
+
 	public final float getValue() {
 		return value;
 	}
@@ -70,7 +91,57 @@ public final class Event {
 		return nanos;
 	}
 
+	/**
+	 * Return the clock the event time was taken from.
+	 */
+	public final Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Return the number of the device frame the event belongs to. Events
+	 * with the same frame number were reported by the device as one update,
+	 * such as the events between two Linux evdev SYN_REPORTs, and are queued
+	 * consecutively. Frame numbers increase per device. Returns -1 if the
+	 * plugin doesn't report frames.
+	 */
+	public final long getFrame() {
+		return frame;
+	}
+
 	public final String toString() {
 		return "Event: component = " + component + " | value = " + value;
 	}
+
+	/**
+	 * The clock an event time is measured on. Only times taken
+	 * from the same clock can be compared.
+	 */
+	public final static class Clock {
+		private final String name;
+
+		/* Private, since plugins only report the clocks below */
+		private Clock(String name) {
+			this.name = name;
+		}
+
+		public String toString() {
+			return name;
+		}
+
+		/**
+		 * The plugin doesn't know which clock the event time is from
+		 */
+		public static final Clock UNKNOWN = new Clock("Unknown");
+
+		/**
+		 * Wall clock time, which can jump when the system time is adjusted
+		 */
+		public static final Clock REALTIME = new Clock("Realtime");
+
+		/**
+		 * A monotonic clock, comparable with System.nanoTime() on the same machine
+		 */
+		public static final Clock MONOTONIC = new Clock("Monotonic");
+	}
 }
@@ -0,0 +1,162 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+package net.java.games.input;
+
+/**
+ * A batch of events drained from an EventQueue in a single call.
+ * <p>
+ * The events are stored in parallel arrays, so draining a queue into a
+ * batch allocates nothing and the batch can be reused every frame.
+ * The component index of an event is the position of its component
+ * in the array returned by Controller.getComponents().
+ */
+public final class EventBatch {
+	private final Component[] components;
+	private final int[] indices;
+	private final float[] values;
+	private final long[] nanos;
+	private final Event.Clock[] clocks;
+	private final long[] frames;
+	private int size;
+
+	/**
+	 * Create a batch holding at most capacity events
+	 */
+	public EventBatch(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid event batch capacity: " + capacity);
+		components = new Component[capacity];
+		indices = new int[capacity];
+		values = new float[capacity];
+		nanos = new long[capacity];
+		clocks = new Event.Clock[capacity];
+		frames = new long[capacity];
+	}
+
+	/**
+	 * Returns the maximum number of events the batch can hold
+	 */
+	public final int getCapacity() {
+		return values.length;
+	}
+
+	/**
+	 * Returns the number of events in the batch
+	 */
+	public final int getSize() {
+		return size;
+	}
+
+	public final Component getComponent(int i) {
+		checkIndex(i);
+		return components[i];
+	}
+
+	/**
+	 * Returns the index of the event component in the controller that
+	 * owns it, or -1 if the component does not belong to an AbstractController
+	 */
+	public final int getComponentIndex(int i) {
+		checkIndex(i);
+		return indices[i];
+	}
+
+	public final float getValue(int i) {
+		checkIndex(i);
+		return values[i];
+	}
+
+	/**
+	 * Returns the time of the event, in nanoseconds.
+	 * @see Event#getNanos()
+	 */
+	public final long getNanos(int i) {
+		checkIndex(i);
+		return nanos[i];
+	}
+
+	/**
+	 * Returns the clock the event time was taken from
+	 */
+	public final Event.Clock getClock(int i) {
+		checkIndex(i);
+		return clocks[i];
+	}
+
+	/**
+	 * Returns the device frame of the event, or -1 if it isn't known.
+	 * @see Event#getFrame()
+	 */
+	public final long getFrame(int i) {
+		checkIndex(i);
+		return frames[i];
+	}
+
+	private final void checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Event " + i + " out of " + size);
+	}
+
+	/**
+	 * Copy the events of a batch into event, for code written against Event
+	 */
+	public final void getEvent(int i, Event event) {
+		checkIndex(i);
+		event.set(components[i], values[i], nanos[i], clocks[i], frames[i]);
+	}
+
+	final void clear() {
+		size = 0;
+	}
+
+	final boolean isFull() {
+		return size == values.length;
+	}
+
+	final void add(Event event) {
+		Component component = event.getComponent();
+		components[size] = component;
+		indices[size] = component != null ? component.getIndex() : -1;
+		values[size] = event.getValue();
+		nanos[size] = event.getNanos();
+		clocks[size] = event.getClock();
+		frames[size] = event.getFrame();
+		size++;
+	}
+}
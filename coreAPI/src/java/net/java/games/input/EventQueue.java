@@ -38,45 +38,293 @@
  *****************************************************************************/
 package net.java.games.input;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * A FIFO queue for input events. 
+ * <p>
+ * By default the queue is synchronized and may be filled and drained
+ * from any number of threads. A queue created in lock free mode is
+ * a single producer, single consumer ring buffer instead: it must only
+ * be filled by one thread (the thread polling the controller) and only
+ * be drained by one other thread, but neither side ever blocks on the other.
+ * <p>
+ * The OverflowPolicy of a queue decides what happens to an event added
+ * to a full queue. Every policy counts the events it dropped, coalesced
+ * or made room for by growing the queue.
  */
 public final class EventQueue {
-	private final Event[] queue;
-	
-	private int head;
-	private int tail;
+	/* Outcomes of offer() */
+	final static int QUEUED = 0;
+	/* Queued after discarding the oldest queued event */
+	final static int QUEUED_DROPPED_OLDEST = 1;
+	/* Merged into the newest queued event */
+	final static int COALESCED = 2;
+	/* Discarded because the queue was full */
+	final static int REJECTED = 3;
+
+	private final static VarHandle SEQUENCE;
+	static {
+		try {
+			SEQUENCE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final boolean lock_free;
+	private final OverflowPolicy overflow_policy;
+	private final int max_capacity;
+	private final int mask;
+	/* Only replaced when a locked GROW queue grows, with the queue locked.
+	 * Volatile so that the queue is safely published without final fields
+	 */
+	private volatile Event[] queue;
+	private volatile int capacity;
+
+	/* Overflow counters, only written by the producer or with the queue locked */
+	private volatile long dropped_count;
+	private volatile long coalesced_count;
+	private volatile long grow_count;
+
+	/* Sequence number of the next event to be read */
+	private final Sequence head = new Sequence();
+	/* Sequence number of the next event to be written */
+	private final Sequence tail = new Sequence();
+
+	/* The producer's possibly stale view of head, to avoid reading the consumer's counter on every add */
+	private long head_cache;
+
+	/* Records consumed events when the controller has metrics enabled */
+	private volatile ControllerMetrics metrics;
 
 	/**
 	 * This is an internal method and should not be called by applications using the API
 	 */
 	public EventQueue(int size) {
-		queue = new Event[size + 1];
+		this(size, false);
+	}
+
+	/**
+	 * This is an internal method and should not be called by applications using the API
+	 *
+	 * @param size The minimum number of events the queue can hold. A lock free queue
+	 * rounds this up to the next power of two.
+	 * @param lock_free true to create a single producer, single consumer queue without locks
+	 */
+	public EventQueue(int size, boolean lock_free) {
+		this(size, lock_free, OverflowPolicy.DROP_NEWEST, size);
+	}
+
+	/**
+	 * This is an internal method and should not be called by applications using the API
+	 *
+	 * @param size The minimum number of events the queue can hold. A lock free queue
+	 * rounds this up to the next power of two.
+	 * @param lock_free true to create a single producer, single consumer queue without locks
+	 * @param overflow_policy What to do with events added to a full queue. A lock
+	 * free queue only supports OverflowPolicy.DROP_NEWEST.
+	 * @param max_size The size a queue with OverflowPolicy.GROW may grow to
+	 */
+	public EventQueue(int size, boolean lock_free, OverflowPolicy overflow_policy, int max_size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Invalid event queue size: " + size);
+		if (lock_free && overflow_policy != OverflowPolicy.DROP_NEWEST)
+			throw new IllegalArgumentException("Lock free event queues only support " + OverflowPolicy.DROP_NEWEST);
+		this.lock_free = lock_free;
+		this.overflow_policy = overflow_policy;
+		this.max_capacity = Math.max(size, max_size);
+		if (lock_free) {
+			int length = Integer.highestOneBit(size);
+			if (length < size)
+				length <<= 1;
+			this.capacity = length;
+			this.mask = length - 1;
+		} else {
+			this.capacity = size;
+			this.mask = -1;
+		}
+		queue = new Event[capacity];
 		for (int i = 0; i < queue.length; i++)
 			queue[i] = new Event();
 	}
 
+	/**
+	 * Returns true if the queue is a lock free single producer, single consumer queue
+	 */
+	public final boolean isLockFree() {
+		return lock_free;
+	}
+
+	/**
+	 * Returns the number of events the queue can currently hold
+	 */
+	public final int getCapacity() {
+		if (lock_free)
+			return capacity;
+		synchronized (this) {
+			return capacity;
+		}
+	}
+
+	public final OverflowPolicy getOverflowPolicy() {
+		return overflow_policy;
+	}
+
+	/**
+	 * Returns the size a queue with OverflowPolicy.GROW may grow to
+	 */
+	public final int getMaxCapacity() {
+		return max_capacity;
+	}
+
+	/**
+	 * Returns the number of events lost because the queue was full,
+	 * either the added event or, with OverflowPolicy.DROP_OLDEST, the oldest event
+	 */
+	public final long getDroppedCount() {
+		return dropped_count;
+	}
+
+	/**
+	 * Returns the number of relative events merged into the newest queued event
+	 * because the queue was full
+	 */
+	public final long getCoalescedCount() {
+		return coalesced_count;
+	}
+
+	/**
+	 * Returns the number of times the queue grew because it was full
+	 */
+	public final long getGrowCount() {
+		return grow_count;
+	}
+
+	private final Event slot(long sequence) {
+		if (lock_free)
+			return queue[(int)sequence & mask];
+		else
+			return queue[(int)(sequence%capacity)];
+	}
+
 	/**
 	 * This is an internal method and should not be called by applications using the API
 	 */
-	final synchronized void add(Event event) {
-		queue[tail].set(event);
-		tail = increase(tail);
+	final void add(Event event) {
+		offer(event);
+	}
+
+	/**
+	 * Add an event to the queue, applying the overflow policy if it is full.
+	 * This is an internal method and should not be called by applications using the API
+	 *
+	 * @return QUEUED, QUEUED_DROPPED_OLDEST, COALESCED or REJECTED
+	 */
+	final int offer(Event event) {
+		if (lock_free)
+			return offerLockFree(event);
+		synchronized (this) {
+			int result = QUEUED;
+			if (tail.value - head.value == capacity) {
+				result = makeRoom(event);
+				if (result == COALESCED || result == REJECTED)
+					return result;
+			}
+			long t = tail.value;
+			slot(t).set(event);
+			tail.value = t + 1;
+			return result;
+		}
+	}
+
+	/*
+	 * Apply the overflow policy to a full locked queue. Returns QUEUED or
+	 * QUEUED_DROPPED_OLDEST if there is room for the event afterwards.
+	 */
+	private final int makeRoom(Event event) {
+		if (overflow_policy == OverflowPolicy.DROP_OLDEST) {
+			head.value++;
+			dropped_count++;
+			return QUEUED_DROPPED_OLDEST;
+		} else if (overflow_policy == OverflowPolicy.GROW && capacity < max_capacity) {
+			grow();
+			grow_count++;
+			return QUEUED;
+		} else if (overflow_policy == OverflowPolicy.COALESCE_RELATIVE && coalesce(event)) {
+			coalesced_count++;
+			return COALESCED;
+		}
+		dropped_count++;
+		return REJECTED;
+	}
+
+	/* Merge a relative event into the newest queued event if it is from the same component */
+	private final boolean coalesce(Event event) {
+		Component component = event.getComponent();
+		if (component == null || !component.isRelative())
+			return false;
+		Event newest = slot(tail.value - 1);
+		if (newest.getComponent() != component)
+			return false;
+		newest.set(component, newest.getValue() + event.getValue(), event.getNanos(), event.getClock(), event.getFrame());
+		return true;
+	}
+
+	/* Double the capacity, up to max_capacity, keeping every queued event at its sequence */
+	private final void grow() {
+		int new_capacity = (int)Math.min((long)capacity*2, max_capacity);
+		Event[] new_queue = new Event[new_capacity];
+		for (long s = head.value; s < tail.value; s++)
+			new_queue[(int)(s%new_capacity)] = slot(s);
+		for (int i = 0; i < new_queue.length; i++) {
+			if (new_queue[i] == null)
+				new_queue[i] = new Event();
+		}
+		queue = new_queue;
+		capacity = new_capacity;
+	}
+
+	private final int offerLockFree(Event event) {
+		long t = (long)SEQUENCE.getOpaque(tail);
+		if (t - head_cache == capacity) {
+			head_cache = (long)SEQUENCE.getAcquire(head);
+			if (t - head_cache == capacity) {
+				dropped_count++;
+				return REJECTED;
+			}
+		}
+		slot(t).set(event);
+		SEQUENCE.setRelease(tail, t + 1);
+		return QUEUED;
 	}
 
 	/**
 	 * Check if the queue is full
 	 * @return true if the queue is full
 	 */
-	final synchronized boolean isFull() {
-		return increase(tail) == head;
+	final boolean isFull() {
+		if (lock_free)
+			return (long)SEQUENCE.getOpaque(tail) - (long)SEQUENCE.getAcquire(head) == capacity;
+		synchronized (this) {
+			return tail.value - head.value == capacity;
+		}
 	}
 
 	/**
-	 * This is an internal method and should not be called by applications using the API
+	 * Returns the number of events in the queue
 	 */
-	private final int increase(int x) {
-		return (x + 1)%queue.length;
+	final int size() {
+		if (lock_free)
+			return (int)((long)SEQUENCE.getAcquire(tail) - (long)SEQUENCE.getAcquire(head));
+		synchronized (this) {
+			return (int)(tail.value - head.value);
+		}
+	}
+
+	final void setMetrics(ControllerMetrics metrics) {
+		this.metrics = metrics;
 	}
 
 	/**
@@ -85,11 +333,129 @@ public final class EventQueue {
 	 * @param event The event to populate
 	 * @return false if there were no events left on the queue, otherwise true.
 	 */
-	public final synchronized boolean getNextEvent(Event event) {
-		if (head == tail)
+	public final boolean getNextEvent(Event event) {
+		boolean result;
+		if (lock_free) {
+			result = getNextEventLockFree(event);
+		} else {
+			synchronized (this) {
+				long h = head.value;
+				result = h != tail.value;
+				if (result) {
+					event.set(slot(h));
+					head.value = h + 1;
+				}
+			}
+		}
+		ControllerMetrics current_metrics = metrics;
+		if (result && current_metrics != null)
+			current_metrics.recordConsumed(event.getClock(), event.getNanos(), System.nanoTime());
+		return result;
+	}
+
+	private final boolean getNextEventLockFree(Event event) {
+		long h = (long)SEQUENCE.getOpaque(head);
+		if (h == (long)SEQUENCE.getAcquire(tail))
 			return false;
-		event.set(queue[head]);
-		head = increase(head);
+		event.set(slot(h));
+		SEQUENCE.setRelease(head, h + 1);
 		return true;
 	}
+
+	/**
+	 * Moves as many events as fit from the head of the queue into batch,
+	 * replacing its previous contents. The queue is locked, or its
+	 * sequence counters read, once for the whole batch.
+	 *
+	 * @param batch The batch to fill
+	 * @return the number of events moved, 0 if the queue was empty
+	 */
+	public final int getNextEvents(EventBatch batch) {
+		batch.clear();
+		if (lock_free) {
+			getNextEventsLockFree(batch);
+		} else {
+			synchronized (this) {
+				long h = head.value;
+				long t = tail.value;
+				while (h != t && !batch.isFull()) {
+					batch.add(slot(h));
+					h++;
+				}
+				head.value = h;
+			}
+		}
+		ControllerMetrics current_metrics = metrics;
+		if (current_metrics != null) {
+			long now = System.nanoTime();
+			for (int i = 0; i < batch.getSize(); i++)
+				current_metrics.recordConsumed(batch.getClock(i), batch.getNanos(i), now);
+		}
+		return batch.getSize();
+	}
+
+	private final void getNextEventsLockFree(EventBatch batch) {
+		long h = (long)SEQUENCE.getOpaque(head);
+		long t = (long)SEQUENCE.getAcquire(tail);
+		while (h != t && !batch.isFull()) {
+			batch.add(slot(h));
+			h++;
+		}
+		SEQUENCE.setRelease(head, h);
+	}
+
+	/**
+	 * What a queue does with an event added while it is full
+	 */
+	public final static class OverflowPolicy {
+		private final String name;
+
+		/* Private, since queues only implement the policies below */
+		private OverflowPolicy(String name) {
+			this.name = name;
+		}
+
+		public String toString() {
+			return name;
+		}
+
+		/**
+		 * Discard the added event. This is the default policy.
+		 */
+		public static final OverflowPolicy DROP_NEWEST = new OverflowPolicy("Drop newest");
+
+		/**
+		 * Discard the oldest queued event to make room for the added event
+		 */
+		public static final OverflowPolicy DROP_OLDEST = new OverflowPolicy("Drop oldest");
+
+		/**
+		 * Add the value of a relative event to the newest queued event if that is
+		 * from the same component, otherwise discard the added event
+		 */
+		public static final OverflowPolicy COALESCE_RELATIVE = new OverflowPolicy("Coalesce relative");
+
+		/**
+		 * Double the queue capacity, up to its maximum size, then discard added events
+		 */
+		public static final OverflowPolicy GROW = new OverflowPolicy("Grow");
+	}
+
+	/*
+	 * A sequence counter padded on both sides so that the producer's
+	 * and the consumer's counters never share a cache line. The padding
+	 * is split over a class hierarchy, because the VM may reorder the
+	 * fields within a class but lays out superclass fields first.
+	 */
+	private static class SequenceLhsPadding {
+		long p0, p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	private static class SequenceValue extends SequenceLhsPadding {
+		volatile long value;
+	}
+
+	private final static class Sequence extends SequenceValue {
+		long q0, q1, q2, q3, q4, q5, q6, q7;
+	}
 }
@@ -0,0 +1,567 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+package net.java.games.input;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls a set of controllers in parallel at a fixed rate.
+ * <p>
+ * Controllers are grouped by the device backing them. On every tick of
+ * the period, each group is polled by its own task on the poll executor.
+ * A group still busy with its previous poll skips the tick, so a slow
+ * device only delays its own group. Every tick also publishes a Frame
+ * holding, for every controller, the poll result and component values
+ * of the last completed poll of its group. The controllers of one group are
+ * always read in the same poll. Like ControllerSnapshot, the service keeps
+ * two frames and fills them in turn, so ticks and polls allocate nothing.
+ * <p>
+ * The poll executor is configurable, so applications can supply a pool of
+ * platform threads or a virtual thread per task executor. Events are
+ * still queued on each controller's EventQueue as usual.
+ */
+public final class PollService {
+	private final Controller[] controllers;
+	private final List<DeviceGroup> groups = new ArrayList<>();
+	private final long period_nanos;
+	private final ExecutorService executor;
+	private final boolean owns_executor;
+	private final ScheduledExecutorService scheduler;
+
+	private ScheduledFuture<?> schedule;
+	private long start_nanos;
+	private long last_tick;
+
+	/* Double buffered frames, filled in turn by the ticks */
+	private final Frame[] frames = new Frame[2];
+	private volatile Frame frame;
+
+	/* Tick metrics, only written by the scheduler thread */
+	private volatile long frame_count;
+	private volatile long total_jitter_nanos;
+	private volatile long max_jitter_nanos;
+
+	/* Group poll metrics, written by the poll tasks */
+	private final AtomicLong overruns = new AtomicLong();
+	private final AtomicLong group_polls = new AtomicLong();
+	private final AtomicLong controller_polls = new AtomicLong();
+	private final AtomicLong total_poll_nanos = new AtomicLong();
+	private final AtomicLong max_poll_nanos = new AtomicLong();
+
+	/**
+	 * Create a service polling the controllers of the default environment
+	 * from a pool with one daemon thread per device.
+	 *
+	 * @param period_nanos The time between the start of two frames
+	 */
+	public PollService(long period_nanos) {
+		this(ControllerEnvironment.getDefaultEnvironment().getControllers(), period_nanos, null);
+	}
+
+	/**
+	 * Create a service polling the given controllers.
+	 *
+	 * @param controllers The controllers to poll
+	 * @param period_nanos The time between the start of two frames
+	 * @param executor The executor to poll the devices on, or null to create
+	 * a pool with one daemon thread per device. A supplied executor is not
+	 * shut down by stop().
+	 */
+	public PollService(Controller[] controllers, long period_nanos, ExecutorService executor) {
+		if (period_nanos <= 0)
+			throw new IllegalArgumentException("Invalid poll period: " + period_nanos);
+		this.controllers = controllers.clone();
+		this.period_nanos = period_nanos;
+		createGroups();
+		if (executor == null) {
+			this.executor = Executors.newFixedThreadPool(Math.max(1, groups.size()), new DaemonThreadFactory("PollService device"));
+			this.owns_executor = true;
+		} else {
+			this.executor = executor;
+			this.owns_executor = false;
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("PollService scheduler"));
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = new Frame(this.controllers);
+		this.frame = updateFrame(-1, System.nanoTime());
+	}
+
+	/* Group controllers sharing a backing device into one task, keeping their order */
+	private final void createGroups() {
+		Map<Object, List<Integer>> device_indices = new LinkedHashMap<>();
+		for (int i = 0; i < controllers.length; i++) {
+			Controller controller = controllers[i];
+			Object device = controller;
+			if (controller instanceof AbstractController)
+				device = ((AbstractController)controller).getBackingDevice();
+			device_indices.computeIfAbsent(device, key -> new ArrayList<>()).add(i);
+		}
+		for (List<Integer> indices : device_indices.values()) {
+			int[] group_indices = new int[indices.size()];
+			for (int i = 0; i < group_indices.length; i++)
+				group_indices[i] = indices.get(i);
+			groups.add(new DeviceGroup(group_indices, controllers));
+		}
+	}
+
+	/**
+	 * Start polling. Frames are numbered from 0.
+	 */
+	public final synchronized void start() {
+		if (schedule != null)
+			return;
+		frame_count = 0;
+		total_jitter_nanos = 0;
+		max_jitter_nanos = 0;
+		overruns.set(0);
+		group_polls.set(0);
+		controller_polls.set(0);
+		total_poll_nanos.set(0);
+		max_poll_nanos.set(0);
+		start_nanos = System.nanoTime();
+		schedule = scheduler.scheduleAtFixedRate(this::tick, 0, period_nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stop polling and release the service's threads. A stopped service
+	 * can't be restarted.
+	 */
+	public final synchronized void stop() {
+		if (schedule != null)
+			schedule.cancel(false);
+		scheduler.shutdown();
+		if (owns_executor)
+			executor.shutdown();
+	}
+
+	/**
+	 * Returns the last published frame. Before the first frame,
+	 * a frame numbered -1 with no values is returned. The frame is
+	 * refilled two ticks later, see Frame.
+	 */
+	public final Frame getFrame() {
+		return frame;
+	}
+
+	public final long getPeriodNanos() {
+		return period_nanos;
+	}
+
+	/**
+	 * Returns the number of groups controllers are polled in, one per backing device
+	 */
+	public final int getDeviceCount() {
+		return groups.size();
+	}
+
+	/* Only called from the scheduler thread */
+	private final void tick() {
+		long now = System.nanoTime();
+		long number = frame_count;
+		for (int i = 0; i < groups.size(); i++) {
+			DeviceGroup group = groups.get(i);
+			if (!group.busy.compareAndSet(false, true)) {
+				// still polling, skip this tick rather than queueing behind it
+				overruns.incrementAndGet();
+				continue;
+			}
+			try {
+				executor.execute(() -> pollGroup(group));
+			} catch (RejectedExecutionException e) {
+				group.busy.set(false);
+			}
+		}
+		frame = updateFrame(number, now);
+		if (number > 0) {
+			long jitter = Math.abs(now - last_tick - period_nanos);
+			total_jitter_nanos += jitter;
+			if (jitter > max_jitter_nanos)
+				max_jitter_nanos = jitter;
+		}
+		last_tick = now;
+		frame_count = number + 1;
+	}
+
+	/* Fill the frame not published with the last completed poll of every group */
+	private final Frame updateFrame(long number, long nanos) {
+		Frame back = frames[(int)(number & 1)];
+		back.beginUpdate(number, nanos);
+		for (int i = 0; i < groups.size(); i++) {
+			DeviceGroup group = groups.get(i);
+			GroupResult result = group.result;
+			if (result == null)
+				continue;
+			for (int j = 0; j < group.indices.length; j++) {
+				int index = group.indices[j];
+				back.valid[index] = result.valid[j];
+				System.arraycopy(result.values[j], 0, back.values[index], 0, result.values[j].length);
+				back.poll_counts[index] = result.count;
+				back.poll_nanos[index] = result.nanos;
+			}
+		}
+		back.endUpdate();
+		return back;
+	}
+
+	/* Polls the controllers of one device and reads their components */
+	private final void pollGroup(DeviceGroup group) {
+		try {
+			long start = System.nanoTime();
+			int[] indices = group.indices;
+			GroupResult last = group.result;
+			// the tick that queued this poll has already picked the result it reads,
+			// and the next tick can't queue another poll before this one is published
+			GroupResult back = last == group.results[0] ? group.results[1] : group.results[0];
+			for (int i = 0; i < indices.length; i++) {
+				Controller controller = controllers[indices[i]];
+				back.valid[i] = controller.poll();
+				Component[] components = controller.getComponents();
+				float[] controller_values = back.values[i];
+				for (int j = 0; j < components.length; j++)
+					controller_values[j] = components[j].getPollData();
+			}
+			long end = System.nanoTime();
+			back.count = last == null ? 1 : last.count + 1;
+			back.nanos = end;
+			group.result = back;
+			long duration = end - start;
+			group_polls.incrementAndGet();
+			controller_polls.addAndGet(indices.length);
+			total_poll_nanos.addAndGet(duration);
+			max_poll_nanos.accumulateAndGet(duration, Math::max);
+		} catch (RuntimeException e) {
+			ControllerEnvironment.logln("Failed to poll device: " + e);
+		} finally {
+			group.busy.set(false);
+		}
+	}
+
+	/**
+	 * Returns the number of frames published since start()
+	 */
+	public final long getFrameCount() {
+		return frame_count;
+	}
+
+	/**
+	 * Returns the number of times a device was skipped on a tick, because
+	 * its previous poll took longer than the period
+	 */
+	public final long getOverruns() {
+		return overruns.get();
+	}
+
+	/**
+	 * Returns the mean difference between the period and the time between
+	 * the start of two consecutive frames
+	 */
+	public final long getMeanJitterNanos() {
+		long count = frame_count - 1;
+		return count <= 0 ? 0 : total_jitter_nanos/count;
+	}
+
+	public final long getMaxJitterNanos() {
+		return max_jitter_nanos;
+	}
+
+	/**
+	 * Returns the mean time to poll the controllers of one device
+	 */
+	public final long getMeanPollNanos() {
+		long count = group_polls.get();
+		return count == 0 ? 0 : total_poll_nanos.get()/count;
+	}
+
+	public final long getMaxPollNanos() {
+		return max_poll_nanos.get();
+	}
+
+	/**
+	 * Returns the number of controller polls per second since start()
+	 */
+	public final double getPollsPerSecond() {
+		long elapsed;
+		synchronized (this) {
+			elapsed = System.nanoTime() - start_nanos;
+		}
+		return elapsed <= 0 ? 0 : (double)controller_polls.get()*1000000000L/elapsed;
+	}
+
+	private final static class DeviceGroup {
+		/* The indices of the group's controllers */
+		final int[] indices;
+		/* Set while a poll of the group is queued or running */
+		final AtomicBoolean busy = new AtomicBoolean();
+		/* Double buffered poll results, filled in turn */
+		final GroupResult[] results;
+		/* The last completed poll, or null before the first */
+		volatile GroupResult result;
+
+		DeviceGroup(int[] indices, Controller[] controllers) {
+			this.indices = indices;
+			this.results = new GroupResult[]{new GroupResult(indices, controllers), new GroupResult(indices, controllers)};
+		}
+	}
+
+	/* The result of one poll of a group, indexed like the group indices */
+	private final static class GroupResult {
+		long count;
+		long nanos;
+		final boolean[] valid;
+		final float[][] values;
+
+		GroupResult(int[] indices, Controller[] controllers) {
+			this.valid = new boolean[indices.length];
+			this.values = new float[indices.length][];
+			for (int i = 0; i < indices.length; i++)
+				values[i] = new float[controllers[indices[i]].getComponents().length];
+		}
+	}
+
+	/**
+	 * The state of all controllers at one tick. Each controller's state is
+	 * from the last completed poll of its device.
+	 * <p>
+	 * A frame obtained from getFrame() is refilled two ticks later. Reads
+	 * are guarded by a sequence counter like those of ControllerSnapshot:
+	 * every getter returns a value of a single tick, and copyValues()
+	 * returns the number of the tick it copied from. Separate calls may
+	 * see different ticks.
+	 */
+	public final static class Frame {
+		private final static VarHandle VERSION;
+		static {
+			try {
+				VERSION = MethodHandles.lookup().findVarHandle(Frame.class, "version", long.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private final Controller[] controllers;
+		private final boolean[] valid;
+		private final float[][] values;
+		private final long[] poll_counts;
+		private final long[] poll_nanos;
+		private long number;
+		private long nanos;
+
+		/* Odd while the frame is being written */
+		private volatile long version;
+
+		Frame(Controller[] controllers) {
+			this.controllers = controllers;
+			this.valid = new boolean[controllers.length];
+			this.values = new float[controllers.length][];
+			for (int i = 0; i < controllers.length; i++)
+				values[i] = new float[controllers[i].getComponents().length];
+			this.poll_counts = new long[controllers.length];
+			this.poll_nanos = new long[controllers.length];
+		}
+
+		/* Only called from the scheduler thread */
+		private final void beginUpdate(long number, long nanos) {
+			VERSION.setOpaque(this, version + 1);
+			VarHandle.storeStoreFence();
+			this.number = number;
+			this.nanos = nanos;
+		}
+
+		private final void endUpdate() {
+			VERSION.setRelease(this, version + 1);
+		}
+
+		/* Returns an even version to read under */
+		private final long beginRead() {
+			while (true) {
+				long v = (long)VERSION.getAcquire(this);
+				if ((v & 1) == 0)
+					return v;
+				Thread.onSpinWait();
+			}
+		}
+
+		/* Returns true unless the frame was written since beginRead() returned v */
+		private final boolean endRead(long v) {
+			VarHandle.loadLoadFence();
+			if ((long)VERSION.getOpaque(this) == v)
+				return true;
+			Thread.onSpinWait();
+			return false;
+		}
+
+		public final long getNumber() {
+			long v;
+			long result;
+			do {
+				v = beginRead();
+				result = number;
+			} while (!endRead(v));
+			return result;
+		}
+
+		/**
+		 * Returns the System.nanoTime() at which the frame was published
+		 */
+		public final long getNanos() {
+			long v;
+			long result;
+			do {
+				v = beginRead();
+				result = nanos;
+			} while (!endRead(v));
+			return result;
+		}
+
+		public final int getControllerCount() {
+			return controllers.length;
+		}
+
+		public final Controller getController(int i) {
+			return controllers[i];
+		}
+
+		/**
+		 * Returns the result of the controller's last poll()
+		 */
+		public final boolean isValid(int i) {
+			long v;
+			boolean result;
+			do {
+				v = beginRead();
+				result = valid[i];
+			} while (!endRead(v));
+			return result;
+		}
+
+		/**
+		 * Returns the number of completed polls of the controller, or 0 if
+		 * it hasn't been polled yet. An unchanged count means the device
+		 * was still busy and the values are from an earlier frame.
+		 */
+		public final long getPollCount(int i) {
+			long v;
+			long result;
+			do {
+				v = beginRead();
+				result = poll_counts[i];
+			} while (!endRead(v));
+			return result;
+		}
+
+		/**
+		 * Returns the System.nanoTime() at which the controller's last poll completed
+		 */
+		public final long getPollNanos(int i) {
+			long v;
+			long result;
+			do {
+				v = beginRead();
+				result = poll_nanos[i];
+			} while (!endRead(v));
+			return result;
+		}
+
+		/**
+		 * Returns the poll data of a component of a controller in this frame
+		 *
+		 * @param i The index of the controller
+		 * @param component The index of the component in the controller's getComponents()
+		 */
+		public final float getValue(int i, int component) {
+			long v;
+			float result;
+			do {
+				v = beginRead();
+				result = values[i][component];
+			} while (!endRead(v));
+			return result;
+		}
+
+		/**
+		 * Copy the component values of a controller from a single tick into
+		 * values, in the order of the controller's getComponents().
+		 *
+		 * @param i The index of the controller
+		 * @param values The array to copy into, at least as long as the controller's getComponents()
+		 * @return The number of the frame the values were copied from
+		 */
+		public final long copyValues(int i, float[] values) {
+			float[] controller_values = this.values[i];
+			if (values.length < controller_values.length)
+				throw new IllegalArgumentException("Array too small for " + controller_values.length + " values");
+			long v;
+			long result;
+			do {
+				v = beginRead();
+				System.arraycopy(controller_values, 0, values, 0, controller_values.length);
+				result = number;
+			} while (!endRead(v));
+			return result;
+		}
+	}
+
+	private final static class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+
+		public DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public final Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
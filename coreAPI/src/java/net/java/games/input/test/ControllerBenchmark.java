@@ -0,0 +1,205 @@
+/*
+ * ControllerBenchmark.java
+ */
+package net.java.games.input.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.java.games.input.Component;
+import net.java.games.input.Controller;
+import net.java.games.input.Event;
+import net.java.games.input.EventBatch;
+import net.java.games.input.EventQueue;
+
+/**
+ * Measures the core event pipeline against synthetic controllers of
+ * realistic sizes, from a 6 button mouse up to a 256 key keyboard.
+ * Every case is warmed up before it is measured and reports the
+ * average time per operation, and the bytes allocated per operation
+ * where the VM can count them, which should be 0 for the poll paths.
+ *
+ * Usage: ControllerBenchmark [measure millis per case]
+ */
+public class ControllerBenchmark {
+	private final static int EVENTS_PER_POLL = 8;
+
+	/* Keeps the JIT from discarding the measured work */
+	private static volatile float sink;
+
+	private interface Operation {
+		void run(SyntheticController controller);
+	}
+
+	private static SyntheticController[] createControllers() {
+		return new SyntheticController[]{
+			SyntheticController.createMouse(6),
+			SyntheticController.createGamepad(14, 6),
+			SyntheticController.createKeyboard(104),
+			SyntheticController.createKeyboard(256)
+		};
+	}
+
+	/* poll() including event generation and queueing, leaving the queue to overflow */
+	private static void poll(SyntheticController controller) {
+		controller.poll();
+	}
+
+	/* poll() followed by draining every queued event, as a game loop would */
+	private static final Event drain_event = new Event();
+	private static void pollAndDrain(SyntheticController controller) {
+		controller.poll();
+		EventQueue queue = controller.getEventQueue();
+		float sum = 0;
+		while (queue.getNextEvent(drain_event))
+			sum += drain_event.getValue();
+		sink = sum;
+	}
+
+	/* poll() followed by draining the queue into a batch in one call */
+	private static final EventBatch batch = new EventBatch(EVENTS_PER_POLL);
+	private static void pollAndDrainBatch(SyntheticController controller) {
+		controller.poll();
+		controller.getEventQueue().getNextEvents(batch);
+		float sum = 0;
+		for (int i = 0; i < batch.getSize(); i++)
+			sum += batch.getValue(i);
+		sink = sum;
+	}
+
+	/* Draining events into per component state kept in a map */
+	private static final Map state_map = new HashMap();
+	private static void pollAndTrackMap(SyntheticController controller) {
+		controller.poll();
+		EventQueue queue = controller.getEventQueue();
+		while (queue.getNextEvent(drain_event))
+			state_map.put(drain_event.getComponent(), Float.valueOf(drain_event.getValue()));
+	}
+
+	/* Draining events into per component state kept in an array indexed by component index */
+	private static float[] state_array = new float[0];
+	private static void pollAndTrackArray(SyntheticController controller) {
+		controller.poll();
+		if (state_array.length < controller.getComponents().length)
+			state_array = new float[controller.getComponents().length];
+		EventQueue queue = controller.getEventQueue();
+		while (queue.getNextEvent(drain_event))
+			state_array[drain_event.getComponentIndex()] = drain_event.getValue();
+	}
+
+	/* Reading every component after a poll, which polls each absolute component once */
+	private static void getPollData(SyntheticController controller) {
+		controller.poll();
+		Component[] components = controller.getComponents();
+		float sum = 0;
+		for (int i = 0; i < components.length; i++)
+			sum += components[i].getPollData();
+		sink = sum;
+	}
+
+	/* Looking up every component by identifier */
+	private static void getComponent(SyntheticController controller) {
+		Component[] components = controller.getComponents();
+		float sum = 0;
+		for (int i = 0; i < components.length; i++)
+			sum += controller.getComponent(components[i].getIdentifier()).getDeadZone();
+		sink = sum;
+	}
+
+	/* Bytes allocated by the current thread per operation, or -1 if the VM can't tell */
+	private static double measureAllocation(SyntheticController controller, Operation op) {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean thread_bean = (com.sun.management.ThreadMXBean)bean;
+		if (!thread_bean.isThreadAllocatedMemorySupported() || !thread_bean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long thread_id = Thread.currentThread().getId();
+		int ops = 100000;
+		long before = thread_bean.getThreadAllocatedBytes(thread_id);
+		for (int i = 0; i < ops; i++)
+			op.run(controller);
+		long after = thread_bean.getThreadAllocatedBytes(thread_id);
+		return (double)(after - before)/ops;
+	}
+
+	private static double measure(SyntheticController controller, Operation op, long duration_millis) {
+		long end = System.nanoTime() + duration_millis*1000000L;
+		long start = System.nanoTime();
+		long ops = 0;
+		long now;
+		do {
+			for (int i = 0; i < 1000; i++)
+				op.run(controller);
+			ops += 1000;
+			now = System.nanoTime();
+		} while (now < end);
+		return (double)(now - start)/ops;
+	}
+
+	private static void run(String name, Operation op, int events_per_poll, long duration_millis) {
+		run(name, op, events_per_poll, false, duration_millis);
+	}
+
+	private static void run(String name, Operation op, int events_per_poll, boolean dirty_tracking, long duration_millis) {
+		SyntheticController[] controllers = createControllers();
+		for (int i = 0; i < controllers.length; i++) {
+			SyntheticController controller = controllers[i];
+			controller.setEventsPerPoll(events_per_poll);
+			controller.setDirtyTrackingEnabled(dirty_tracking);
+			measure(controller, op, duration_millis/2);
+			double ns = measure(controller, op, duration_millis);
+			double bytes = measureAllocation(controller, op);
+			System.out.println(String.format("%-14s %-20s %4d components %10.1f ns/op %8.1f B/op",
+						name, controller.getName(), controller.getComponents().length, ns, bytes));
+		}
+	}
+
+	/* A mouse reporting nothing but motion, as a high rate mouse does, with and without coalescing */
+	private static void runMotion(boolean coalesce, long duration_millis) {
+		SyntheticController mouse = SyntheticController.createMouse(0);
+		mouse.setEventsPerPoll(64);
+		mouse.setEventQueueSize(64);
+		mouse.setRelativeCoalescingEnabled(coalesce);
+		Operation op = ControllerBenchmark::pollAndDrain;
+		measure(mouse, op, duration_millis/2);
+		double ns = measure(mouse, op, duration_millis);
+		mouse.poll();
+		int queued = 0;
+		while (mouse.getEventQueue().getNextEvent(drain_event))
+			queued++;
+		System.out.println(String.format("%-14s %-20s %4d events/poll %9.1f ns/op",
+					"motion", coalesce ? "coalesced" : "not coalesced", queued, ns));
+	}
+
+	/* Event throughput of a gamepad with events pulled by poll() or dispatched by the device */
+	private static void runDispatch(boolean direct, long duration_millis) {
+		SyntheticController gamepad = SyntheticController.createGamepad(12, 8);
+		gamepad.setEventsPerPoll(EVENTS_PER_POLL);
+		gamepad.setDirectDispatch(direct);
+		Operation op = ControllerBenchmark::pollAndDrain;
+		measure(gamepad, op, duration_millis/2);
+		double ns = measure(gamepad, op, duration_millis);
+		System.out.println(String.format("%-14s %-20s %10.0f events/s %9.1f ns/op",
+					"events", direct ? "dispatched" : "pulled", EVENTS_PER_POLL*1e9/ns, ns));
+	}
+
+	public static void main(String[] args) {
+		long duration = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		System.out.println(EVENTS_PER_POLL + " events per poll, " + duration + " ms per case");
+		run("poll", ControllerBenchmark::poll, EVENTS_PER_POLL, duration);
+		run("poll dirty", ControllerBenchmark::poll, EVENTS_PER_POLL, true, duration);
+		run("poll+drain", ControllerBenchmark::pollAndDrain, EVENTS_PER_POLL, duration);
+		run("poll+batch", ControllerBenchmark::pollAndDrainBatch, EVENTS_PER_POLL, duration);
+		run("poll+state map", ControllerBenchmark::pollAndTrackMap, EVENTS_PER_POLL, duration);
+		run("poll+state array", ControllerBenchmark::pollAndTrackArray, EVENTS_PER_POLL, duration);
+		run("getPollData", ControllerBenchmark::getPollData, 0, duration);
+		run("getComponent", ControllerBenchmark::getComponent, 0, duration);
+		runMotion(false, duration);
+		runMotion(true, duration);
+		runDispatch(false, duration);
+		runDispatch(true, duration);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * ControllerMetricsTest.java
+ */
+package net.java.games.input.test;
+
+import net.java.games.input.Component;
+import net.java.games.input.ControllerMetrics;
+import net.java.games.input.ControllerMetricsListener;
+import net.java.games.input.Controller;
+import net.java.games.input.Event;
+import net.java.games.input.EventQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the event counts of ControllerMetrics against the events a
+ * synthetic controller generated and the events its queue delivered.
+ * Relative motion is coalesced, so fewer events are queued than read.
+ * The events per poll histogram must hold every poll, and the latency
+ * histogram every delivered event, on both the monotonic and the wall clock.
+ * Then it overfills the event queue under every overflow policy and
+ * checks that the dropped and coalesced counts of the metrics and the
+ * listener match those of the queue.
+ */
+public class ControllerMetricsTest {
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	private final static class CountingListener implements ControllerMetricsListener {
+		long events;
+		long dropped;
+
+		public void polled(ControllerMetrics metrics, int num_events, int num_dropped) {
+			events += num_events;
+			dropped += num_dropped;
+		}
+	}
+
+	private static long sum(long[] histogram) {
+		long count = 0;
+		for (int i = 0; i < histogram.length; i++)
+			count += histogram[i];
+		return count;
+	}
+
+	private static void testCoalescedCounts(int polls, int events_per_poll) {
+		// two relative axes, so every poll coalesces to at most two events
+		SyntheticController mouse = new SyntheticController("Synthetic motion", Controller.Type.MOUSE, new Component[]{
+			new SyntheticComponent(Component.Identifier.Axis.X, true, true),
+			new SyntheticComponent(Component.Identifier.Axis.Y, true, true)
+		});
+		mouse.setEventsPerPoll(events_per_poll);
+		mouse.setRelativeCoalescingEnabled(true);
+		mouse.setMetricsEnabled(true);
+		CountingListener listener = new CountingListener();
+		ControllerMetrics metrics = mouse.getMetrics();
+		metrics.addListener(listener);
+		EventQueue queue = mouse.getEventQueue();
+		Event event = new Event();
+		long delivered = 0;
+		for (int i = 0; i < polls; i++) {
+			mouse.poll();
+			while (queue.getNextEvent(event))
+				delivered++;
+		}
+		mouse.setMetricsEnabled(false);
+		long read = (long)polls*events_per_poll;
+		System.out.println(String.format("coalesced: %d read %d queued %d delivered", metrics.getEventCount(), metrics.getQueuedEventCount(), delivered));
+		check(metrics.getEventCount() == read, "Counted " + metrics.getEventCount() + " events read, the device generated " + read);
+		check(listener.events == read, "Listener counted " + listener.events + " events read, the device generated " + read);
+		check(metrics.getQueuedEventCount() == delivered, "Counted " + metrics.getQueuedEventCount() + " events queued, the queue delivered " + delivered);
+		check(delivered <= polls*2L, "Coalescing queued " + delivered + " events in " + polls + " polls");
+		check(metrics.getDroppedEventCount() == 0 && listener.dropped == 0, "Events dropped from a queue that was drained every poll");
+		long[] events_histogram = metrics.getEventsPerPollHistogram();
+		check(sum(events_histogram) == polls, "Events per poll histogram holds " + sum(events_histogram) + " of " + polls + " polls");
+		long percentile = metrics.getEventsPerPollPercentile(0.5);
+		check(percentile >= events_per_poll && percentile < events_per_poll*2, "Median of " + events_per_poll + " events per poll in the bucket up to " + percentile);
+	}
+
+	private static void testLatency(Event.Clock clock, int polls) {
+		SyntheticController pad = SyntheticController.createGamepad(8, 2);
+		pad.setEventsPerPoll(4);
+		pad.setClock(clock);
+		pad.setMetricsEnabled(true);
+		ControllerMetrics metrics = pad.getMetrics();
+		EventQueue queue = pad.getEventQueue();
+		Event event = new Event();
+		long delivered = 0;
+		for (int i = 0; i < polls; i++) {
+			pad.poll();
+			while (queue.getNextEvent(event))
+				delivered++;
+		}
+		pad.setMetricsEnabled(false);
+		System.out.println(String.format("latency %-9s %d samples, median %d ns, max %d ns", clock, metrics.getLatencySampleCount(),
+					metrics.getMedianLatencyNanos(), metrics.getMaxLatencyNanos()));
+		check(metrics.getLatencySampleCount() == delivered, clock + ": " + metrics.getLatencySampleCount() + " latency samples for " + delivered + " events");
+		// events are consumed right after the poll, so anything near a second is a clock mix up
+		check(metrics.getMedianLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(100), clock + ": median latency " + metrics.getMedianLatencyNanos() + " ns");
+	}
+
+	private static void testOverflow(EventQueue.OverflowPolicy policy, boolean lock_free, int polls, int events_per_poll) {
+		// a single relative axis, so a full queue can always coalesce
+		SyntheticController mouse = new SyntheticController("Synthetic motion", Controller.Type.MOUSE, new Component[]{
+			new SyntheticComponent(Component.Identifier.Axis.X, true, true)
+		});
+		mouse.setEventsPerPoll(events_per_poll);
+		mouse.setEventQueueSize(8, lock_free);
+		if (!lock_free)
+			mouse.setEventQueueOverflowPolicy(policy, 16);
+		mouse.setMetricsEnabled(true);
+		CountingListener listener = new CountingListener();
+		ControllerMetrics metrics = mouse.getMetrics();
+		metrics.addListener(listener);
+		EventQueue queue = mouse.getEventQueue();
+		Event event = new Event();
+		long delivered = 0;
+		// the queue is only drained every fourth poll, so it overflows
+		for (int i = 0; i < polls; i++) {
+			mouse.poll();
+			if (i%4 == 3) {
+				while (queue.getNextEvent(event))
+					delivered++;
+			}
+		}
+		while (queue.getNextEvent(event))
+			delivered++;
+		mouse.setMetricsEnabled(false);
+		long read = (long)polls*events_per_poll;
+		System.out.println(String.format("%-17s %-9s %6d read %6d delivered %6d dropped %6d coalesced %3d grown", policy, lock_free ? "lock free" : "locked",
+					metrics.getEventCount(), delivered, queue.getDroppedCount(), queue.getCoalescedCount(), queue.getGrowCount()));
+		check(queue.getDroppedCount() + queue.getCoalescedCount() > 0, policy + ": the queue never overflowed");
+		check(metrics.getDroppedEventCount() == queue.getDroppedCount(), policy + ": metrics counted " + metrics.getDroppedEventCount() + " dropped events, the queue " + queue.getDroppedCount());
+		check(listener.dropped == queue.getDroppedCount(), policy + ": listener counted " + listener.dropped + " dropped events, the queue " + queue.getDroppedCount());
+		check(metrics.getQueueCoalescedEventCount() == queue.getCoalescedCount(), policy + ": metrics counted " + metrics.getQueueCoalescedEventCount() + " coalesced events, the queue " + queue.getCoalescedCount());
+		// every event read is either delivered, lost or merged into a delivered event
+		check(read == delivered + queue.getDroppedCount() + queue.getCoalescedCount(), policy + ": " + read + " events read, " + delivered + " delivered");
+	}
+
+	public static void main(String[] args) {
+		testCoalescedCounts(1000, 51);
+		testLatency(Event.Clock.MONOTONIC, 1000);
+		testLatency(Event.Clock.REALTIME, 1000);
+		testOverflow(EventQueue.OverflowPolicy.DROP_NEWEST, false, 1000, 5);
+		testOverflow(EventQueue.OverflowPolicy.DROP_NEWEST, true, 1000, 5);
+		testOverflow(EventQueue.OverflowPolicy.DROP_OLDEST, false, 1000, 5);
+		testOverflow(EventQueue.OverflowPolicy.COALESCE_RELATIVE, false, 1000, 5);
+		testOverflow(EventQueue.OverflowPolicy.GROW, false, 1000, 5);
+		System.out.println("ok");
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * DirtyPollTest.java
+ */
+package net.java.games.input.test;
+
+import net.java.games.input.Component;
+import net.java.games.input.EventBatch;
+
+/**
+ * Polls a large synthetic keyboard with a few key events per poll and
+ * reads every key after each poll, as a game scanning its bindings would.
+ * It counts the keys polled for their state, with and without dirty
+ * tracking. With dirty tracking only keys with events may be polled again,
+ * so the work per poll follows the events instead of the number of keys.
+ *
+ * Usage: DirtyPollTest [keys] [events per poll] [polls]
+ */
+public class DirtyPollTest {
+	/* Keeps the JIT from discarding the key reads */
+	private static volatile float sink;
+	private static long countComponentPolls(SyntheticController keyboard) {
+		Component[] components = keyboard.getComponents();
+		long total = 0;
+		for (int i = 0; i < components.length; i++)
+			total += ((SyntheticComponent)components[i]).getNumPolls();
+		return total;
+	}
+
+	/* Returns the component polls per controller poll */
+	private static double run(int num_keys, int events_per_poll, int polls, boolean dirty_tracking) {
+		SyntheticController keyboard = SyntheticController.createKeyboard(num_keys);
+		keyboard.setEventsPerPoll(events_per_poll);
+		keyboard.setDirtyTrackingEnabled(dirty_tracking);
+		Component[] components = keyboard.getComponents();
+		int[] changed = new int[components.length];
+		EventBatch batch = new EventBatch(events_per_poll);
+		float sum = 0;
+		// the first poll polls every key once
+		keyboard.poll(changed);
+		for (int i = 0; i < components.length; i++)
+			sum += components[i].getPollData();
+		long before = countComponentPolls(keyboard);
+		long start = System.nanoTime();
+		for (int p = 0; p < polls; p++) {
+			keyboard.poll(changed);
+			for (int i = 0; i < components.length; i++)
+				sum += components[i].getPollData();
+			// the events aren't of interest here
+			keyboard.getEventQueue().getNextEvents(batch);
+		}
+		long nanos = System.nanoTime() - start;
+		sink = sum;
+		double per_poll = (double)(countComponentPolls(keyboard) - before)/polls;
+		System.out.println(String.format("%-6s %4d keys %3d events/poll %8.1f key polls/poll %8.1f ns/poll",
+					dirty_tracking ? "dirty" : "full", num_keys, events_per_poll, per_poll, (double)nanos/polls));
+		return per_poll;
+	}
+
+	public static void main(String[] args) {
+		int num_keys = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int events_per_poll = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int polls = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		double full = run(num_keys, events_per_poll, polls, false);
+		double dirty = run(num_keys, events_per_poll, polls, true);
+		if (full < num_keys) {
+			System.out.println("Full polls skipped keys");
+			System.exit(1);
+		}
+		if (dirty > events_per_poll) {
+			System.out.println("Dirty tracking polled more keys than had events");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * EventQueueBenchmark.java
+ */
+package net.java.games.input.test;
+
+import net.java.games.input.Event;
+import net.java.games.input.EventQueue;
+
+/**
+ * Measures event throughput between a polling thread filling a controller
+ * event queue and an application thread draining it, for both the
+ * synchronized and the lock free event queue.
+ */
+public class EventQueueBenchmark {
+	private final static int QUEUE_SIZE = 32;
+	private final static int EVENTS_PER_POLL = 16;
+
+	private static void run(boolean lock_free, long duration_millis) throws InterruptedException {
+		final SyntheticController controller = SyntheticController.createGamepad(8, 0);
+		controller.setEventsPerPoll(EVENTS_PER_POLL);
+		controller.setEventQueueSize(QUEUE_SIZE, lock_free);
+		final EventQueue queue = controller.getEventQueue();
+		final long[] received = new long[1];
+		final long[] polls = new long[1];
+		final long end = System.currentTimeMillis() + duration_millis;
+		Thread consumer = new Thread(() -> {
+			Event event = new Event();
+			long n = 0;
+			while (System.currentTimeMillis() < end) {
+				if (queue.getNextEvent(event))
+					n++;
+				else
+					Thread.yield();
+			}
+			received[0] = n;
+		});
+		Thread producer = new Thread(() -> {
+			long n = 0;
+			while (System.currentTimeMillis() < end) {
+				controller.poll();
+				n++;
+				// let the consumer in on machines with few cores
+				Thread.yield();
+			}
+			polls[0] = n;
+		});
+		consumer.start();
+		producer.start();
+		producer.join();
+		consumer.join();
+		long produced = polls[0]*EVENTS_PER_POLL;
+		System.out.println((lock_free ? "lock free:    " : "synchronized: ") +
+				(received[0]*1000/duration_millis) + " events/s delivered, " +
+				(produced*1000/duration_millis) + " events/s produced, " +
+				(produced - received[0]) + " dropped");
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		long duration = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		// warm up both paths before measuring
+		run(false, duration/4);
+		run(true, duration/4);
+		System.out.println("Measuring for " + duration + " ms per queue");
+		run(false, duration);
+		run(true, duration);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * PollServiceTest.java
+ */
+package net.java.games.input.test;
+
+import net.java.games.input.Controller;
+import net.java.games.input.ControllerEnvironment;
+import net.java.games.input.PollService;
+
+/**
+ * Polls controllers through a PollService and prints its metrics and
+ * the latest frame. With "synthetic" as the first argument, 16 synthetic
+ * controllers are polled instead of the real ones, one of them with a
+ * poll three periods long. The test fails unless at least half of the
+ * frames due were published, and every controller but the slow one was
+ * polled on at least half of them.
+ *
+ * Usage: PollServiceTest [synthetic] [period millis] [run millis]
+ */
+public class PollServiceTest {
+	public static void main(String[] args) throws InterruptedException {
+		boolean synthetic = args.length > 0 && args[0].equals("synthetic");
+		long period = args.length > 1 ? Long.parseLong(args[1]) : 4;
+		long duration = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+		Controller[] controllers;
+		if (synthetic) {
+			controllers = new Controller[16];
+			for (int i = 0; i < controllers.length; i++) {
+				SyntheticController controller = SyntheticController.createGamepad(12, 4);
+				controller.setEventsPerPoll(4);
+				controllers[i] = controller;
+			}
+			((SyntheticController)controllers[0]).setPollDelay(period*3);
+		} else {
+			controllers = ControllerEnvironment.getDefaultEnvironment().getControllers();
+		}
+		PollService service = new PollService(controllers, period*1000000L, null);
+		service.start();
+		Thread.sleep(duration);
+		service.stop();
+		PollService.Frame frame = service.getFrame();
+		System.out.println(controllers.length + " controllers on " + service.getDeviceCount() + " devices, " +
+				service.getFrameCount() + " frames of " + period + " ms, " + service.getOverruns() + " overruns");
+		System.out.println("jitter mean " + service.getMeanJitterNanos()/1000 + " us, max " + service.getMaxJitterNanos()/1000 + " us");
+		System.out.println("device poll mean " + service.getMeanPollNanos()/1000 + " us, max " + service.getMaxPollNanos()/1000 + " us");
+		System.out.println((long)service.getPollsPerSecond() + " controller polls/s");
+		System.out.println("Last frame " + frame.getNumber() + ":");
+		for (int i = 0; i < frame.getControllerCount(); i++) {
+			Controller controller = frame.getController(i);
+			StringBuffer buffer = new StringBuffer();
+			buffer.append(controller.getName()).append(" poll ").append(frame.getPollCount(i)).append(frame.isValid(i) ? ":" : " (invalid):");
+			for (int j = 0; j < controller.getComponents().length; j++)
+				buffer.append(' ').append(frame.getValue(i, j));
+			System.out.println(buffer);
+		}
+		long expected_frames = duration/period;
+		if (service.getFrameCount() < expected_frames/2) {
+			System.out.println("Published " + service.getFrameCount() + " of " + expected_frames + " frames");
+			System.exit(1);
+		}
+		// the slow controller must not hold back the others
+		long min_polls = frame.getNumber()/2;
+		for (int i = synthetic ? 1 : 0; i < frame.getControllerCount(); i++) {
+			if (frame.getPollCount(i) < min_polls) {
+				System.out.println("Controller " + i + " was polled " + frame.getPollCount(i) + " times in " + frame.getNumber() + " frames");
+				System.exit(1);
+			}
+		}
+		if (synthetic)
+			System.out.println("Slow controller polled " + frame.getPollCount(0) + " times, the others at least " + min_polls + " times");
+		else
+			System.out.println("Controllers polled at least " + min_polls + " times in " + frame.getNumber() + " frames");
+	}
+}
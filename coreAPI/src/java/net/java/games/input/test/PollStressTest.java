@@ -0,0 +1,119 @@
+/*
+ * PollStressTest.java
+ */
+package net.java.games.input.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import net.java.games.input.Component;
+import net.java.games.input.Event;
+import net.java.games.input.EventQueue;
+
+/**
+ * Polls many synthetic controllers in parallel from a ForkJoinPool and
+ * checks that every event comes back intact: it belongs to the controller
+ * that was polled, no event is lost and every button toggles in order.
+ *
+ * The pool parallelism is set explicitly, so that polls overlap even on a
+ * machine with a single CPU, and the test fails if fewer than two worker
+ * threads took part.
+ *
+ * Usage: PollStressTest [controllers] [rounds] [parallelism]
+ */
+public class PollStressTest {
+	private final static int EVENTS_PER_POLL = 16;
+	private final static int MIN_PARALLELISM = 4;
+
+	/* The worker threads that ran a task */
+	private final static Set workers = ConcurrentHashMap.newKeySet();
+
+	/* Polls and drains one controller, returning the number of bad events */
+	private final static class PollTask implements Callable {
+		private final SyntheticController controller;
+		private final float[] last_values;
+		private final Event event = new Event();
+
+		public PollTask(SyntheticController controller) {
+			this.controller = controller;
+			this.last_values = new float[controller.getComponents().length];
+		}
+
+		private int indexOf(Component component) {
+			Component[] components = controller.getComponents();
+			for (int i = 0; i < components.length; i++)
+				if (components[i] == component)
+					return i;
+			return -1;
+		}
+
+		public Object call() {
+			workers.add(Thread.currentThread());
+			int errors = 0;
+			if (!controller.poll())
+				errors++;
+			EventQueue queue = controller.getEventQueue();
+			int received = 0;
+			while (queue.getNextEvent(event)) {
+				received++;
+				int index = indexOf(event.getComponent());
+				if (index == -1) {
+					errors++;
+					continue;
+				}
+				// every button event must toggle the button
+				float expected = 1 - last_values[index];
+				if (event.getValue() != expected)
+					errors++;
+				last_values[index] = event.getValue();
+			}
+			if (received != EVENTS_PER_POLL)
+				errors++;
+			return Integer.valueOf(errors);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int num_controllers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int parallelism = Math.max(MIN_PARALLELISM, args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+		List tasks = new ArrayList();
+		for (int i = 0; i < num_controllers; i++) {
+			// buttons only, so that every event toggles its component
+			SyntheticController controller = SyntheticController.createGamepad(6 + i%32, 0);
+			controller.setEventsPerPoll(EVENTS_PER_POLL);
+			tasks.add(new PollTask(controller));
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		if (pool.getParallelism() < MIN_PARALLELISM) {
+			System.out.println("Pool parallelism " + pool.getParallelism() + " is below " + MIN_PARALLELISM);
+			System.exit(1);
+		}
+		long errors = 0;
+		long start = System.nanoTime();
+		try {
+			for (int r = 0; r < rounds; r++) {
+				List results = pool.invokeAll(tasks);
+				for (int i = 0; i < results.size(); i++)
+					errors += ((Integer)((Future)results.get(i)).get()).intValue();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		long millis = (System.nanoTime() - start)/1000000;
+		long events = (long)num_controllers*rounds*EVENTS_PER_POLL;
+		System.out.println(num_controllers + " controllers, " + rounds + " rounds, parallelism " +
+				pool.getParallelism() + ", " + workers.size() + " workers: " + events + " events in " + millis + " ms, " + errors + " errors");
+		if (workers.size() < 2) {
+			System.out.println("Polls never ran concurrently");
+			System.exit(1);
+		}
+		if (errors != 0)
+			System.exit(1);
+	}
+}
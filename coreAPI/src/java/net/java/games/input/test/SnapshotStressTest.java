@@ -0,0 +1,110 @@
+/*
+ * SnapshotStressTest.java
+ */
+package net.java.games.input.test;
+
+import net.java.games.input.Component;
+import net.java.games.input.ControllerSnapshot;
+import net.java.games.input.EventBatch;
+
+/**
+ * Polls a synthetic controller that toggles every button on every poll
+ * while reader threads copy its snapshots. A consistent frame has all
+ * buttons in the same state, pressed after odd polls and released after
+ * even ones, so any mixed frame or state not matching the poll count
+ * copied with it is a torn read.
+ * <p>
+ * The run is repeated with buttons that take a while to poll, like
+ * components read with an ioctl. Reads must not wait for the device, so
+ * the mean copyValues() time must stay well below the time one poll
+ * spends reading the buttons. That is only checked on more than one
+ * processor.
+ *
+ * Usage: SnapshotStressTest [readers] [run millis]
+ */
+public class SnapshotStressTest {
+	private final static int NUM_BUTTONS = 32;
+	/* Time to poll one button in the slow run */
+	private final static long SLOW_POLL_NANOS = 20000;
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	/* Returns the mean copyValues() time in nanoseconds */
+	private static long run(int num_readers, long duration, long poll_delay_nanos) throws InterruptedException {
+		final SyntheticController controller = SyntheticController.createGamepad(NUM_BUTTONS, 0);
+		Component[] components = controller.getComponents();
+		for (int i = 0; i < components.length; i++)
+			((SyntheticComponent)components[i]).setPollDelay(poll_delay_nanos);
+		controller.setEventsPerPoll(components.length);
+		controller.setEventQueueSize(components.length*2);
+		controller.setSnapshotEnabled(true);
+		controller.poll();
+		final long end = System.currentTimeMillis() + duration;
+		final long[] reads = new long[num_readers];
+		final long[] torn = new long[num_readers];
+		final long[] read_nanos = new long[num_readers];
+		Thread[] readers = new Thread[num_readers];
+		for (int r = 0; r < num_readers; r++) {
+			final int reader = r;
+			readers[r] = new Thread(() -> {
+				float[] values = new float[controller.getComponents().length];
+				while (System.currentTimeMillis() < end) {
+					ControllerSnapshot snapshot = controller.getSnapshot();
+					long start = System.nanoTime();
+					long poll_count = snapshot.copyValues(values);
+					read_nanos[reader] += System.nanoTime() - start;
+					float expected = poll_count%2 == 1 ? 1 : 0;
+					for (int i = 0; i < values.length; i++) {
+						if (values[i] != expected) {
+							torn[reader]++;
+							break;
+						}
+					}
+					reads[reader]++;
+				}
+			});
+			readers[r].start();
+		}
+		EventBatch batch = new EventBatch(64);
+		long polls = 0;
+		while (System.currentTimeMillis() < end) {
+			controller.poll();
+			// the events aren't of interest here
+			controller.getEventQueue().getNextEvents(batch);
+			polls++;
+		}
+		long total_reads = 0;
+		long total_torn = 0;
+		long total_read_nanos = 0;
+		for (int r = 0; r < num_readers; r++) {
+			readers[r].join();
+			total_reads += reads[r];
+			total_torn += torn[r];
+			total_read_nanos += read_nanos[r];
+		}
+		long mean_read_nanos = total_reads == 0 ? 0 : total_read_nanos/total_reads;
+		System.out.println(polls + " polls of " + poll_delay_nanos*components.length/1000 + " us, " + total_reads + " snapshot reads by " + num_readers +
+				" threads, " + total_torn + " torn, " + mean_read_nanos + " ns per read");
+		check(total_torn == 0, total_torn + " torn reads");
+		return mean_read_nanos;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int num_readers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		long duration = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+		run(num_readers, duration, 0);
+		long device_nanos = SLOW_POLL_NANOS*NUM_BUTTONS;
+		long mean_read_nanos = run(num_readers, duration, SLOW_POLL_NANOS);
+		// on a single processor the readers never run during a poll, so only its preemption can stall them
+		if (Runtime.getRuntime().availableProcessors() < 2) {
+			System.out.println("Read latency not checked on a single processor");
+			return;
+		}
+		check(mean_read_nanos < device_nanos/4, "Snapshot reads took " + mean_read_nanos + " ns while polling the buttons takes " + device_nanos + " ns");
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * SyntheticComponent.java
+ */
+package net.java.games.input.test;
+
+import java.io.IOException;
+
+import net.java.games.input.AbstractComponent;
+import net.java.games.input.Component;
+
+/**
+ * A component of a SyntheticController. Its polled state is whatever
+ * the controller last generated an event for.
+ */
+public class SyntheticComponent extends AbstractComponent {
+	private final boolean relative;
+	private final boolean analog;
+	private volatile float state;
+	private long num_polls;
+	private long poll_delay_nanos;
+
+	public SyntheticComponent(Component.Identifier id, boolean relative, boolean analog) {
+		super(id.getName(), id);
+		this.relative = relative;
+		this.analog = analog;
+	}
+
+	public boolean isRelative() {
+		return relative;
+	}
+
+	public boolean isAnalog() {
+		return analog;
+	}
+
+	final void setState(float state) {
+		this.state = state;
+	}
+
+	/**
+	 * Returns the number of times the component was polled for its state
+	 */
+	public long getNumPolls() {
+		return num_polls;
+	}
+
+	/**
+	 * Busy wait for the given time on every poll of the component's state,
+	 * like a component read with an ioctl
+	 */
+	public void setPollDelay(long poll_delay_nanos) {
+		this.poll_delay_nanos = poll_delay_nanos;
+	}
+
+	protected float poll() throws IOException {
+		num_polls++;
+		if (poll_delay_nanos > 0) {
+			long end = System.nanoTime() + poll_delay_nanos;
+			while (System.nanoTime() < end)
+				Thread.onSpinWait();
+		}
+		return state;
+	}
+}
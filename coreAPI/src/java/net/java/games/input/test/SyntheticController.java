@@ -0,0 +1,187 @@
+/*
+ * SyntheticController.java
+ */
+package net.java.games.input.test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.games.input.AbstractController;
+import net.java.games.input.Component;
+import net.java.games.input.Controller;
+import net.java.games.input.Event;
+import net.java.games.input.Rumbler;
+
+/**
+ * A controller without a device behind it, for benchmarks and tests.
+ * Every poll() generates a configurable number of events, cycling
+ * through the components: buttons toggle starting with a press, absolute axes alternate
+ * between two values and relative axes move by one unit.
+ */
+public class SyntheticController extends AbstractController {
+	private final Component[] components;
+	private final Controller.Type type;
+	private int events_per_poll;
+	private long poll_delay_millis;
+	private boolean direct_dispatch;
+	private Event.Clock clock = Event.Clock.MONOTONIC;
+	private final Event device_event = new Event();
+	private int remaining;
+	private int count;
+
+	public SyntheticController(String name, Controller.Type type, Component[] components) {
+		super(name, components, new Controller[]{}, new Rumbler[]{});
+		this.components = components;
+		this.type = type;
+	}
+
+	/**
+	 * A mouse with the given number of buttons and x, y and wheel axes
+	 */
+	public static SyntheticController createMouse(int num_buttons) {
+		List components = new ArrayList();
+		addButtons(components, num_buttons);
+		components.add(new SyntheticComponent(Component.Identifier.Axis.X, true, true));
+		components.add(new SyntheticComponent(Component.Identifier.Axis.Y, true, true));
+		components.add(new SyntheticComponent(Component.Identifier.Axis.Z, true, true));
+		return new SyntheticController("Synthetic mouse", Controller.Type.MOUSE, toArray(components));
+	}
+
+	/**
+	 * A gamepad with the given number of buttons and absolute axes
+	 */
+	public static SyntheticController createGamepad(int num_buttons, int num_axes) {
+		List components = new ArrayList();
+		addButtons(components, num_buttons);
+		List axes = getIdentifiers(Component.Identifier.Axis.class);
+		for (int i = 0; i < num_axes; i++)
+			components.add(new SyntheticComponent((Component.Identifier)axes.get(i%axes.size()), false, true));
+		return new SyntheticController("Synthetic gamepad", Controller.Type.GAMEPAD, toArray(components));
+	}
+
+	/**
+	 * A keyboard with the given number of keys
+	 */
+	public static SyntheticController createKeyboard(int num_keys) {
+		List components = new ArrayList();
+		List keys = getIdentifiers(Component.Identifier.Key.class);
+		for (int i = 0; i < num_keys; i++) {
+			Component.Identifier id;
+			if (i < keys.size())
+				id = (Component.Identifier)keys.get(i);
+			else
+				id = new Component.Identifier.Button("Extra key " + i);
+			components.add(new SyntheticComponent(id, false, false));
+		}
+		return new SyntheticController("Synthetic keyboard", Controller.Type.KEYBOARD, toArray(components));
+	}
+
+	private static void addButtons(List components, int num_buttons) {
+		List buttons = getIdentifiers(Component.Identifier.Button.class);
+		for (int i = 0; i < num_buttons; i++) {
+			Component.Identifier id;
+			if (i < buttons.size())
+				id = (Component.Identifier)buttons.get(i);
+			else
+				id = new Component.Identifier.Button("Extra button " + i);
+			components.add(new SyntheticComponent(id, false, false));
+		}
+	}
+
+	/* The predefined identifiers of the given class, in declaration order */
+	private static List getIdentifiers(Class id_class) {
+		List ids = new ArrayList();
+		Field[] fields = id_class.getFields();
+		for (int i = 0; i < fields.length; i++) {
+			Field field = fields[i];
+			if (Modifier.isStatic(field.getModifiers()) && field.getType() == id_class) {
+				try {
+					Object id = field.get(null);
+					if (id != Component.Identifier.Axis.POV && !ids.contains(id))
+						ids.add(id);
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		return ids;
+	}
+
+	private static Component[] toArray(List components) {
+		return (Component[])components.toArray(new Component[components.size()]);
+	}
+
+	public void setEventsPerPoll(int events_per_poll) {
+		this.events_per_poll = events_per_poll;
+	}
+
+	/**
+	 * Make every poll block for the given time, like a device with a slow ioctl
+	 */
+	public void setPollDelay(long poll_delay_millis) {
+		this.poll_delay_millis = poll_delay_millis;
+	}
+
+	/**
+	 * Deliver events from pollDevice() with dispatchEvent(), like the Linux
+	 * joystick plugin, instead of returning them from getNextDeviceEvent()
+	 */
+	public void setDirectDispatch(boolean direct_dispatch) {
+		this.direct_dispatch = direct_dispatch;
+	}
+
+	/**
+	 * Stamp events with the given clock, MONOTONIC by default, or REALTIME
+	 * for wall clock times like the default of the Linux evdev plugin
+	 */
+	public void setClock(Event.Clock clock) {
+		this.clock = clock;
+	}
+
+	public Controller.Type getType() {
+		return type;
+	}
+
+	protected void pollDevice() throws IOException {
+		if (poll_delay_millis > 0) {
+			try {
+				Thread.sleep(poll_delay_millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		remaining = events_per_poll;
+		if (direct_dispatch) {
+			while (getNextDeviceEvent(device_event))
+				dispatchEvent(device_event);
+		}
+	}
+
+	protected boolean getNextDeviceEvent(Event event) throws IOException {
+		if (remaining == 0 || components.length == 0)
+			return false;
+		remaining--;
+		SyntheticComponent component = (SyntheticComponent)components[count%components.length];
+		int round = count/components.length;
+		count++;
+		float value;
+		if (component.isRelative())
+			value = (round%2)*2 - 1;
+		else if (component.isAnalog())
+			value = (round%2) - 0.5f;
+		else
+			value = 1 - round%2;
+		component.setState(value);
+		if (clock == Event.Clock.REALTIME) {
+			Instant now = Instant.now();
+			event.set(component, value, now.getEpochSecond()*1000000000L + now.getNano(), clock);
+		} else {
+			event.set(component, value, System.nanoTime(), clock);
+		}
+		return true;
+	}
+}
@@ -48,6 +48,8 @@ final class LinuxAbstractController extends AbstractController {
 	private final PortType port;
 	private final LinuxEventDevice device;
 	private final Type type;
+	/* Set once a combined controller took over the device, see release() */
+	private volatile boolean released;
 	
 	protected LinuxAbstractController(LinuxEventDevice device, Component[] components, Controller[] children, Rumbler[] rumblers, Type type) throws IOException {
 		super(device.getName(), components, children, rumblers);
@@ -60,7 +62,26 @@ final class LinuxAbstractController extends AbstractController {
 		return port;
 	}
 
+	protected final Object getBackingDevice() {
+		return device;
+	}
+
+	final LinuxEventDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * Stop polling the device, because a LinuxCombinedController closed or
+	 * muted it and reads the controller's state from the joystick device.
+	 * Every later poll() fails and returns false.
+	 */
+	final void release() {
+		released = true;
+	}
+
 	public final void pollDevice() throws IOException {
+			if (released)
+				throw new IOException("Event device is released to a combined controller");
 			device.pollKeyStates();
 	}
 
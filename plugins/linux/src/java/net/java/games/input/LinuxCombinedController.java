@@ -6,29 +6,79 @@ public class LinuxCombinedController extends AbstractController {
 
 	private LinuxAbstractController eventController;
 	private LinuxJoystickAbstractController joystickController;
+	/* Set if the event device couldn't be muted and is drained on every poll instead */
+	private final boolean drain_event_device;
+	private final LinuxEvent linux_event = new LinuxEvent();
 
 	LinuxCombinedController(LinuxAbstractController eventController, LinuxJoystickAbstractController joystickController) {
 		super(eventController.getName(), joystickController.getComponents(), eventController.getControllers(), eventController.getRumblers());
 		this.eventController = eventController;
 		this.joystickController = joystickController;
+		this.drain_event_device = releaseEventDevice();
+	}
+
+	/**
+	 * The joystick device provides both the state and the events, so the event
+	 * device is closed, or muted if its rumblers still need it. Returns true if
+	 * it couldn't be muted and must be drained instead.
+	 */
+	private final boolean releaseEventDevice() {
+		eventController.release();
+		LinuxEventDevice device = eventController.getDevice();
+		if (getRumblers().length == 0) {
+			try {
+				device.close();
+			} catch (IOException e) {
+				LinuxEnvironmentPlugin.logln("Failed to close event device: " + e.getMessage());
+			}
+			return false;
+		}
+		try {
+			device.muteEvents();
+			return false;
+		} catch (IOException e) {
+			LinuxEnvironmentPlugin.logln("Failed to mute event device: " + e.getMessage());
+			return true;
+		}
+	}
+
+	/**
+	 * Returns true if the event device still queues events, which pollDevice() drains
+	 */
+	final boolean isDrainingEventDevice() {
+		return drain_event_device;
 	}
 
 	protected boolean getNextDeviceEvent(Event event) throws IOException {
-		return joystickController.getNextDeviceEvent(event);
+		// Joystick events are dispatched by pollDevice()
+		return false;
 	}
 
 	public final PortType getPortType() {
 		return eventController.getPortType();
 	}
 
+	protected final Object getBackingDevice() {
+		return joystickController.getBackingDevice();
+	}
+
 	public final void pollDevice() throws IOException {
-		eventController.pollDevice();
-		joystickController.pollDevice();
+		if (drain_event_device) {
+			LinuxEventDevice device = eventController.getDevice();
+			while (device.getNextEvent(linux_event))
+				;
+		}
+		joystickController.pollDevice(this);
 	}
 
 	public Type getType() {
 		return eventController.getType();
 	}
+	/**
+	 * Returns the controller of the event device. Its device is closed or
+	 * muted when the combined controller is created, so its poll() always
+	 * returns false. Poll the combined controller instead.
+	 */
 	public LinuxAbstractController getEventController() { return eventController; }
 	public LinuxJoystickAbstractController getJoystickController() { return joystickController; }
 }
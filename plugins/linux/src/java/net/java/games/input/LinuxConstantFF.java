@@ -36,7 +36,14 @@ final class LinuxConstantFF extends LinuxForceFeedbackEffect {
     }
 
 	protected final int upload(int id, float intensity) throws IOException {
-		int scaled_intensity = Math.round(intensity*0x7fff);
-		return getDevice().uploadConstantEffect(id, 0, 0, 0, 0, 0, scaled_intensity, 0, 0, 0, 0);
+		return getDevice().uploadConstantEffect(id, 0, 0, 0, 0, 0, getLevel(intensity), 0, 0, 0, 0);
+	}
+
+	protected final long getParameters(float intensity) {
+		return getLevel(intensity);
+	}
+
+	private final static int getLevel(float intensity) {
+		return Math.round(intensity*0x7fff);
 	}
 }
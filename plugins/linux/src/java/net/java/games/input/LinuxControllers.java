@@ -45,26 +45,24 @@ import java.io.IOException;
 * @version 1.0
 */
 final class LinuxControllers {
-	private final static LinuxEvent linux_event = new LinuxEvent();
-
-	/* Declared synchronized to protect linux_event */
-	public final static synchronized boolean getNextDeviceEvent(Event event, LinuxEventDevice device) throws IOException {
-		while (device.getNextEvent(linux_event)) {
-			LinuxAxisDescriptor descriptor = linux_event.getDescriptor();
-			LinuxComponent component = device.mapDescriptor(descriptor);
-			if (component != null) {
-				float value = component.convertValue(linux_event.getValue(), descriptor);
-				event.set(component, value, linux_event.getNanos());
-				return true;
+	/* Each device owns its scratch event, so only polls of the same device are serialized */
+	public final static boolean getNextDeviceEvent(Event event, LinuxEventDevice device) throws IOException {
+		synchronized (device) {
+			LinuxEvent linux_event = device.getLinuxEvent();
+			while (device.getNextEvent(linux_event)) {
+				LinuxAxisDescriptor descriptor = linux_event.getDescriptor();
+				LinuxComponent component = device.mapComponent(descriptor.getType(), descriptor.getCode());
+				if (component != null) {
+					float value = component.convertValue(linux_event.getValue(), descriptor);
+					event.set(component, value, linux_event.getNanos(), device.getClock(), device.getFrameNumber());
+					return true;
+				}
 			}
+			return false;
 		}
-		return false;
 	}
 
-	private final static LinuxAbsInfo abs_info = new LinuxAbsInfo();
-
-	/* Declared synchronized to protect abs_info */
-	public final static synchronized float poll(LinuxEventComponent event_component) throws IOException {
+	public final static float poll(LinuxEventComponent event_component) throws IOException {
 		int native_type = event_component.getDescriptor().getType();
 		switch (native_type) {
 			case NativeDefinitions.EV_KEY:
@@ -72,8 +70,7 @@ final class LinuxControllers {
 				float state = event_component.getDevice().isKeySet(native_code) ? 1f : 0f;
 				return state;
 			case NativeDefinitions.EV_ABS:
-				event_component.getAbsInfo(abs_info);
-				return abs_info.getValue();
+				return event_component.getAbsValue();
 			default:
 				throw new RuntimeException("Unkown native_type: " + native_type);
 		}
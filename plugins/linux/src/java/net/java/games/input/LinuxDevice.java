@@ -36,7 +36,11 @@ import java.util.ArrayList;
  */
 interface LinuxDevice {
 	void close() throws IOException;
+	/* True once the device is closed, after which its file descriptor may belong to another file */
+	boolean isClosed();
 	public String getName();
 	public String getFilename();
+	/* The file descriptor backing the device, used for readiness notification */
+	long getFD();
 
 }
@@ -26,37 +26,37 @@
 package net.java.games.input;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
-abstract class LinuxDeviceTask {
-	public final static int INPROGRESS = 1;
-	public final static int COMPLETED = 2;
-	public final static int FAILED = 3;
-	
-	private Object result;
-	private IOException exception;
-	private int state = INPROGRESS;
-	
-	public final void doExecute() {
-		try {
-			result = execute();
-			state = COMPLETED;
-		} catch (IOException e) {
-			exception = e;
-			state = FAILED;
-		}
-	}
+abstract class LinuxDeviceTask implements Callable<Object> {
+	/* The queued, not yet started run of this task. Guarded by the task lock */
+	private FutureTask<Object> pending;
 
-	public final IOException getException() {
-		return exception;
+	/**
+	 * Queue a run of this task on the executor, unless a run is already
+	 * queued and hasn't started yet, in which case that run is returned.
+	 * Since the task reads its parameters when it runs, a coalesced run
+	 * always sees the parameters of the latest submission.
+	 * Only runs of the same task object are coalesced, never two tasks for
+	 * the same device. Requests that should collapse, like the rumble
+	 * requests of an effect, must resubmit one task object.
+	 */
+	final synchronized FutureTask<Object> enqueue(Executor executor) {
+		if (pending == null) {
+			pending = new FutureTask<>(this);
+			executor.execute(pending);
+		}
+		return pending;
 	}
 
-	public final Object getResult() {
-		return result;
+	public final Object call() throws IOException {
+		synchronized (this) {
+			pending = null;
+		}
+		return execute();
 	}
 
-	public final int getState() {
-		return state;
-	}
-	
 	protected abstract Object execute() throws IOException;
 }
@@ -26,8 +26,10 @@
 package net.java.games.input;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Linux doesn't have proper support for force feedback
@@ -39,53 +41,57 @@ import java.util.ArrayList;
  *  and implicit deletion of all the process' effects)
  * is run on a single thread.
  */
-final class LinuxDeviceThread extends Thread {
-	private final List tasks = new ArrayList();
-	
+final class LinuxDeviceThread {
+	private final ExecutorService executor;
+	private volatile Thread thread;
+
 	public LinuxDeviceThread() {
-		setDaemon(true);
-		start();
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "LinuxDeviceThread");
+			thread.setDaemon(true);
+			this.thread = thread;
+			return thread;
+		});
 	}
 
-	public synchronized final void run() {
-		while (true) {
-			if (!tasks.isEmpty()) {
-				LinuxDeviceTask task = (LinuxDeviceTask)tasks.remove(0);
-				task.doExecute();
-				synchronized (task) {
-					task.notify();
-				}
-			} else {
-				try {
-					wait();
-				} catch (InterruptedException e) {
-					// ignore
-				}
-			}
-		}
+	/**
+	 * Queue the task without waiting for it to complete. If the same task
+	 * object is already queued and not yet started, the queued run is returned
+	 * instead. Different task objects always run separately.
+	 */
+	public final Future<Object> submit(LinuxDeviceTask task) {
+		return task.enqueue(executor);
 	}
 
+	/**
+	 * Run the task on the device thread and wait for its result
+	 */
 	public final Object execute(LinuxDeviceTask task) throws IOException {
-		synchronized (this) {
-			tasks.add(task);
-			notify();
-		}
-		synchronized (task) {
-			while (task.getState() == LinuxDeviceTask.INPROGRESS) {
+		if (Thread.currentThread() == thread)
+			return task.execute();
+		Future<Object> future = submit(task);
+		boolean interrupted = false;
+		try {
+			while (true) {
 				try {
-					task.wait();
+					return future.get();
 				} catch (InterruptedException e) {
-					// ignore
+					// keep waiting, the device thread might be in the middle of the task
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException)
+						throw (IOException)cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException)cause;
+					if (cause instanceof Error)
+						throw (Error)cause;
+					throw new RuntimeException(cause);
 				}
 			}
-		}
-		switch (task.getState()) {
-			case LinuxDeviceTask.COMPLETED:
-				return task.getResult();
-			case LinuxDeviceTask.FAILED:
-				throw task.getException();
-			default:
-				throw new RuntimeException("Invalid task state: " + task.getState());
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
 		}
 	}
 }
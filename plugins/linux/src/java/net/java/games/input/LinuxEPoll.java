@@ -0,0 +1,95 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+package net.java.games.input;
+
+import java.io.IOException;
+
+/** Thin wrapper around a Linux epoll instance
+* @version 1.0
+*/
+final class LinuxEPoll {
+	private final long epfd;
+
+	/* Closed state variable that protects the validity of the file descriptor.
+	 *  Access to the closed state must be synchronized
+	 */
+	private boolean closed;
+
+	public LinuxEPoll() throws IOException {
+		this.epfd = nCreate();
+	}
+	private final static native long nCreate() throws IOException;
+
+	/**
+	 * Register a file descriptor for input readiness. The token is
+	 * reported by wait() when the descriptor becomes readable.
+	 */
+	public final synchronized void add(long fd, int token) throws IOException {
+		checkClosed();
+		nAdd(epfd, fd, token);
+	}
+	private final static native void nAdd(long epfd, long fd, int token) throws IOException;
+
+	/**
+	 * Wait for registered descriptors to become readable.
+	 * Deliberately not synchronized so that close() doesn't block on a waiting thread.
+	 *
+	 * @param tokens array receiving the tokens of the readable descriptors. The token
+	 * of a descriptor that hung up or failed is stored as -(token + 1)
+	 * @param timeout_millis maximum time to wait, or -1 to wait indefinitely
+	 * @return the number of tokens stored
+	 */
+	public final int waitReadable(int[] tokens, int timeout_millis) throws IOException {
+		return nWait(epfd, tokens, timeout_millis);
+	}
+	private final static native int nWait(long epfd, int[] tokens, int timeout_millis) throws IOException;
+
+	public final synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			nClose(epfd);
+		}
+	}
+	private final static native void nClose(long epfd) throws IOException;
+
+	private final void checkClosed() throws IOException {
+		if (closed)
+			throw new IOException("epoll instance is closed");
+	}
+}
@@ -27,6 +27,7 @@ package net.java.games.input;
 
 // === java imports === //
 import java.util.*;
+import java.util.concurrent.Future;
 import java.io.IOException;
 import java.io.File;
 import java.io.FilenameFilter;
@@ -49,6 +50,22 @@ public final class LinuxEnvironmentPlugin extends ControllerEnvironment implemen
 	private final List<LinuxDevice> devices;
 	private final HashMap<LinuxDevice, Controller> controllerDeviceMap;
 	private static boolean supported;
+	/* When set, Rumbler.rumble() queues the request for the device thread instead of waiting for it */
+	private final static boolean async_rumble = Boolean.parseBoolean(getPrivilegedProperty("net.java.games.input.linux.asyncRumble", "false").trim());
+	/* When set, absolute axes are polled from the EV_ABS events already read instead of an EVIOCGABS ioctl per axis */
+	private final static boolean abs_shadow_state = Boolean.parseBoolean(getPrivilegedProperty("net.java.games.input.linux.absShadowState", "false").trim());
+	/* Either "realtime", the kernel default, or "monotonic" to timestamp evdev events on the clock of System.nanoTime() */
+	private final static boolean monotonic_clock = "monotonic".equalsIgnoreCase(getPrivilegedProperty("net.java.games.input.linux.eventClock", "realtime").trim());
+
+	/* Serializes awaitEvents() callers, which share the epoll tokens */
+	private final Object await_lock = new Object();
+	/* epoll instance for awaitEvents(), rebuilt whenever the set of devices changes */
+	private final Object epoll_lock = new Object();
+	private LinuxEPoll epoll;
+	private List<LinuxDevice> epoll_devices = new ArrayList<>();
+	private int[] epoll_tokens = new int[0];
+	/* Devices that reported a hang up or an error, and are no longer waited for */
+	private final Set<LinuxDevice> hung_up_devices = new HashSet<>();
 
 	// ============= Constructors ============== //
 	public LinuxEnvironmentPlugin() {
@@ -98,6 +115,76 @@ public final class LinuxEnvironmentPlugin extends ControllerEnvironment implemen
 	}
 	public boolean isSupported() { return supported; }
 
+	/**
+	 * Blocks until input is pending on at least one controller, or until the timeout expires.
+	 * Call poll() on the returned controllers to consume their input.
+	 * A controller whose device hung up, for example because it was unplugged, is
+	 * returned once and then no longer waited for. Concurrent calls are serialized.
+	 *
+	 * @param timeoutNanos the maximum time to wait in nanoseconds, or a negative value to wait indefinitely
+	 * @return the controllers with pending input, or an empty array if the timeout expired
+	 */
+	public final Controller[] awaitEvents(long timeoutNanos) {
+		if (!isSupported()) return new Controller[0];
+		synchronized (await_lock) {
+			LinuxEPoll epoll;
+			List<LinuxDevice> epoll_devices;
+			int[] tokens;
+			try {
+				synchronized (epoll_lock) {
+					updateEPoll();
+					epoll = this.epoll;
+					epoll_devices = this.epoll_devices;
+					tokens = epoll_tokens;
+				}
+				int timeout_millis;
+				if (timeoutNanos < 0) timeout_millis = -1;
+				else timeout_millis = (int) Math.min(Integer.MAX_VALUE, (timeoutNanos + 999999)/1000000);
+				int num_ready = epoll.waitReadable(tokens, timeout_millis);
+				List<Controller> ready = new ArrayList<>(num_ready);
+				for (int i = 0; i < num_ready; i++) {
+					int token = tokens[i];
+					if (token < 0) {
+						// hung up, drop the device from the next epoll instance
+						token = -token - 1;
+						synchronized (epoll_lock) {
+							hung_up_devices.add(epoll_devices.get(token));
+						}
+					}
+					Controller controller = controllerDeviceMap.get(epoll_devices.get(token));
+					// combined controllers are backed by two devices
+					if (controller != null && !ready.contains(controller))
+						ready.add(controller);
+				}
+				return ready.toArray(new Controller[0]);
+			} catch (IOException e) {
+				logln("Failed to wait for events: " + e.getMessage());
+				return new Controller[0];
+			}
+		}
+	}
+	private void updateEPoll() throws IOException {
+		List<LinuxDevice> active_devices = new ArrayList<>();
+		for (LinuxDevice device : devices) {
+			// a closed device's file descriptor number may already belong to another file
+			if (controllerDeviceMap.get(device) != null && !hung_up_devices.contains(device) && !device.isClosed()) active_devices.add(device);
+		}
+		if (epoll != null && active_devices.equals(epoll_devices)) return;
+		LinuxEPoll new_epoll = new LinuxEPoll();
+		try {
+			for (int i = 0; i < active_devices.size(); i++) new_epoll.add(active_devices.get(i).getFD(), i);
+		} catch (IOException e) {
+			new_epoll.close();
+			throw e;
+		}
+		// swap in the new instance before closing the old one
+		LinuxEPoll old_epoll = epoll;
+		epoll = new_epoll;
+		epoll_devices = active_devices;
+		epoll_tokens = new int[Math.max(1, active_devices.size())];
+		if (old_epoll != null) old_epoll.close();
+	}
+
 	// ============= Private Methods ============== //
 	private Controller[] scanControllers() {
 		Controller[] controllerArray;
@@ -143,8 +230,11 @@ public final class LinuxEnvironmentPlugin extends ControllerEnvironment implemen
 							localControllers.add(combinedController);
 							for (LinuxDevice device : devices) {
 								Controller deviceController = controllerDeviceMap.get(device);
-								if (deviceController == evController || deviceController == jsController)
+								if (deviceController == jsController || (deviceController == evController && combinedController.isDrainingEventDevice()))
 									controllerDeviceMap.put(device,combinedController);
+								else if (deviceController == evController)
+									// the event device is closed or muted
+									controllerDeviceMap.remove(device);
 							}
 							i--;
 							j--;
@@ -380,6 +470,18 @@ public final class LinuxEnvironmentPlugin extends ControllerEnvironment implemen
 	public static Object execute(LinuxDeviceTask task) throws IOException {
 		return device_thread.execute(task);
 	}
+	public static Future<Object> submit(LinuxDeviceTask task) {
+		return device_thread.submit(task);
+	}
+	static boolean isAsyncRumble() {
+		return async_rumble;
+	}
+	static boolean isAbsShadowState() {
+		return abs_shadow_state;
+	}
+	static boolean isMonotonicClock() {
+		return monotonic_clock;
+	}
 	private static Component[] createComponents(List event_components, LinuxEventDevice device) {
 		LinuxEventComponent[][] povs = new LinuxEventComponent[4][2];
 		List<Component> components = new ArrayList<>();
@@ -502,6 +604,12 @@ public final class LinuxEnvironmentPlugin extends ControllerEnvironment implemen
 	}
 	private final class ShutdownHook extends Thread {
 		public final void run() {
+			synchronized (epoll_lock) {
+				if (epoll != null) {
+					try { epoll.close(); }
+					catch (IOException e) { logln(e.getMessage()); }
+				}
+			}
 			for (LinuxDevice linuxDevice : devices) {
 				try { linuxDevice.close(); }
 				catch (IOException e) {	logln( e.getMessage()); }
@@ -58,6 +58,7 @@ final class LinuxEventComponent {
 			this.min = abs_info.getMin();
 			this.max = abs_info.getMax();
 			this.flat = abs_info.getFlat();
+			device.initAbsValue(native_code, abs_info.getValue());
 		} else {
 			this.min = Integer.MIN_VALUE;
 			this.max = Integer.MAX_VALUE;
@@ -73,6 +74,11 @@ final class LinuxEventComponent {
 		assert descriptor.getType() == NativeDefinitions.EV_ABS;
 		device.getAbsInfo(descriptor.getCode(), abs_info);
 	}
+
+	public final int getAbsValue() throws IOException {
+		assert descriptor.getType() == NativeDefinitions.EV_ABS;
+		return device.getAbsValue(descriptor.getCode());
+	}
 	
 	public final Controller.Type getButtonTrait() {
 		return button_trait;
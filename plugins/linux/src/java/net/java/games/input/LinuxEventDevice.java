@@ -27,8 +27,8 @@ package net.java.games.input;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -36,23 +36,73 @@ import java.util.ArrayList;
  * @author elias
  */
 final class LinuxEventDevice implements LinuxDevice {
-	private final Map component_map = new HashMap();
+	/* Maximum number of kernel events fetched by a single read */
+	private final static int EVENT_BUFFER_SIZE = 64;
+	/* Maximum number of events buffered while waiting for a SYN_REPORT */
+	private final static int MAX_FRAME_SIZE = 1024;
+	/* CLOCK_MONOTONIC from <time.h> */
+	private final static int CLOCK_MONOTONIC = 1;
+	/* sizeof(struct input_event), which depends on the native word size */
+	private final static int INPUT_EVENT_SIZE = nGetEventSize();
+
+	/* Components indexed by native code, one table per event type */
+	private final LinuxComponent[] key_components = new LinuxComponent[NativeDefinitions.KEY_MAX + 1];
+	private final LinuxComponent[] abs_components = new LinuxComponent[NativeDefinitions.ABS_MAX + 1];
+	private final LinuxComponent[] rel_components = new LinuxComponent[NativeDefinitions.REL_MAX + 1];
 	private final Rumbler[] rumblers;
 	private final long fd;
 	private final String name;
 	private final LinuxInputID input_id;
 	private final List components;
 	private final Controller.Type type;
+	private final Event.Clock clock;
 
 	/* Closed state variable that protects the validity of the file descriptor.
 	 *  Access to the closed state must be synchronized
 	 */
 	private boolean closed;
 
-	/* Access to the key_states array could be synchronized, but
-	 * it doesn't hurt to have multiple threads read/write from/to it
+	/* The EVIOCGKEY key bitmap, and the same bits as 64 bit words with bit n of
+	 * the bitmap in bit n%64 of word n/64. Access is protected by the device lock
+	 */
+	private final long[] key_words = new long[NativeDefinitions.KEY_MAX/64 + 1];
+	private final byte[] key_states = new byte[key_words.length*8];
+	private final ByteBuffer key_states_buffer = ByteBuffer.wrap(key_states).order(ByteOrder.LITTLE_ENDIAN);
+	/* Bit n is set if key code n has a component, in the same layout as key_words */
+	private final long[] key_component_words = new long[key_words.length];
+	/* True if EV_KEY events were read since the key states were last fetched */
+	private boolean keys_changed = true;
+
+	/* Last known value of every absolute axis, kept from EV_ABS events. Polls are
+	 * served from it when abs_shadow_state is set. Access is protected by the device lock
 	 */
-	private final byte[] key_states = new byte[NativeDefinitions.KEY_MAX/8 + 1];
+	private final boolean abs_shadow_state = LinuxEnvironmentPlugin.isAbsShadowState();
+	private final int[] abs_values = new int[NativeDefinitions.ABS_MAX + 1];
+	/* The absolute axes of the device, and scratch space for their values when resyncing */
+	private final int[] abs_axes;
+	private final int[] resync_abs_values;
+	private final long[] resync_key_words = new long[key_words.length];
+	/* The key states as of the events delivered, which resync compares against */
+	private final long[] event_key_words = new long[key_words.length];
+
+	/* Events are delivered a whole frame at a time, once the frame's SYN_REPORT is read.
+	 * Access is protected by the device lock
+	 */
+	private LinuxEventFrame pending_frame = new LinuxEventFrame();
+	private LinuxEventFrame ready_frame = new LinuxEventFrame();
+	private int ready_position;
+	/* Set by SYN_DROPPED; events are discarded until the next SYN_REPORT, then the state is resynced */
+	private boolean dropping;
+	/* The number of the frame events are returned from, counting from 1 */
+	private long frame_number;
+	private final LinuxEvent raw_event = new LinuxEvent();
+
+	/* Scratch state for LinuxControllers. Access is protected by the device lock */
+	private final LinuxEvent linux_event = new LinuxEvent();
+	private final LinuxAbsInfo abs_info = new LinuxAbsInfo();
+
+	/* Events read from the kernel but not yet decoded. Access is protected by the device lock */
+	private final LinuxEventReader reader;
 	private String filename;
 	
     public LinuxEventDevice(String filename) throws IOException {
@@ -65,10 +115,14 @@ final class LinuxEventDevice implements LinuxDevice {
 			detect_rumblers = false;
 		}
 		this.fd = fd;
+		this.reader = new LinuxEventReader(fd, INPUT_EVENT_SIZE, EVENT_BUFFER_SIZE);
+		this.clock = selectClock();
 		try {
 			this.name = getDeviceName();
 			this.input_id = getDeviceInputID();
 			this.components = getDeviceComponents();
+			this.abs_axes = getAbsoluteAxes(components);
+			this.resync_abs_values = new int[abs_axes.length];
 			if (detect_rumblers)
 				this.rumblers = enumerateRumblers();
 			else
@@ -78,10 +132,55 @@ final class LinuxEventDevice implements LinuxDevice {
 			close();
 			throw e;
 		}
-		File file = new File(filename);
-		this.filename = file.getName();
+		this.filename = new File(filename).getName();
     }
-	private final static native long nOpen(String filename, boolean rw) throws IOException;
+
+	/**
+	 * Creates a device for a file descriptor that isn't an evdev node, like a FIFO fed
+	 * recorded events, with the keys and relative axes set in the bitmaps. Every ioctl fails.
+	 */
+	static LinuxEventDevice create(String name, long fd, byte[] key_bits, byte[] rel_bits) throws IOException {
+		return new LinuxEventDevice(name, fd, key_bits, rel_bits);
+	}
+
+	private LinuxEventDevice(String name, long fd, byte[] key_bits, byte[] rel_bits) throws IOException {
+		this.fd = fd;
+		this.reader = new LinuxEventReader(fd, INPUT_EVENT_SIZE, EVENT_BUFFER_SIZE);
+		this.clock = Event.Clock.REALTIME;
+		this.name = name;
+		this.input_id = new LinuxInputID(0, 0, 0, 0);
+		List components = new ArrayList();
+		addKeys(components, key_bits);
+		addRelativeAxes(components, rel_bits);
+		this.components = components;
+		this.abs_axes = new int[0];
+		this.resync_abs_values = new int[0];
+		this.rumblers = new Rumbler[]{};
+		this.type = guessType();
+		this.filename = name;
+	}
+
+	final static native long nOpen(String filename, boolean rw) throws IOException;
+
+	private final Event.Clock selectClock() {
+		if (LinuxEnvironmentPlugin.isMonotonicClock()) {
+			try {
+				nSetClockID(fd, CLOCK_MONOTONIC);
+				return Event.Clock.MONOTONIC;
+			} catch (IOException e) {
+				LinuxEnvironmentPlugin.logln("Failed to select the monotonic event clock: " + e.getMessage());
+			}
+		}
+		return Event.Clock.REALTIME;
+	}
+	private final static native void nSetClockID(long fd, int clock_id) throws IOException;
+
+	/**
+	 * Returns the clock the kernel timestamps the device events with
+	 */
+	public final Event.Clock getClock() {
+		return clock;
+	}
 
 	public final Controller.Type getType() {
 		return type;
@@ -193,7 +292,8 @@ final class LinuxEventDevice implements LinuxDevice {
 	}
 	private final static native int nUploadConstantEffect(long fd, int id, int direction, int trigger_button, int trigger_interval, int replay_length, int replay_delay, int constant_level, int constant_env_attack_length, int constant_env_attack_level, int constant_env_fade_length, int constant_env_fade_level) throws IOException;
 
-	final void eraseEffect(int id) throws IOException {
+	final synchronized void eraseEffect(int id) throws IOException {
+		checkClosed();
 		nEraseEffect(fd, id);
 	}
 	private final static native void nEraseEffect(long fd, int ff_id) throws IOException;
@@ -204,12 +304,38 @@ final class LinuxEventDevice implements LinuxDevice {
 	}
 	private final static native void nWriteEvent(long fd, int type, int code, int value) throws IOException;
 
-	public final void registerComponent(LinuxAxisDescriptor desc, LinuxComponent component) {
-		component_map.put(desc, component);
+	public final synchronized void registerComponent(LinuxAxisDescriptor desc, LinuxComponent component) {
+		LinuxComponent[] table = getComponentTable(desc.getType());
+		if (table != null && desc.getCode() < table.length) {
+			table[desc.getCode()] = component;
+			if (desc.getType() == NativeDefinitions.EV_KEY)
+				key_component_words[desc.getCode()/64] |= 1L << desc.getCode();
+		}
 	}
 
 	public final LinuxComponent mapDescriptor(LinuxAxisDescriptor desc) {
-		return (LinuxComponent)component_map.get(desc);
+		return mapComponent(desc.getType(), desc.getCode());
+	}
+
+	public final LinuxComponent mapComponent(int type, int code) {
+		LinuxComponent[] table = getComponentTable(type);
+		// the running kernel can report codes beyond the compiled in maximums
+		if (table == null || code >= table.length)
+			return null;
+		return table[code];
+	}
+
+	private final LinuxComponent[] getComponentTable(int type) {
+		switch (type) {
+			case NativeDefinitions.EV_KEY:
+				return key_components;
+			case NativeDefinitions.EV_ABS:
+				return abs_components;
+			case NativeDefinitions.EV_REL:
+				return rel_components;
+			default:
+				return null;
+		}
 	}
 
 	public final Controller.PortType getPortType() throws IOException {
@@ -235,20 +361,152 @@ final class LinuxEventDevice implements LinuxDevice {
 	}
 	private final static native int nGetVersion(long fd) throws IOException;
 
+	/**
+	 * Returns the next event of a complete frame. The events of a frame are only
+	 * returned once its SYN_REPORT has been read, so they are always delivered
+	 * together. EV_SYN events themselves are not returned.
+	 */
 	public final synchronized boolean getNextEvent(LinuxEvent linux_event) throws IOException {
 		checkClosed();
-		return nGetNextEvent(fd, linux_event);
+		if (ready_position == ready_frame.size()) {
+			ready_frame.clear();
+			ready_position = 0;
+			if (!readFrames())
+				return false;
+			frame_number++;
+		}
+		ready_frame.get(ready_position++, linux_event);
+		int type = linux_event.getDescriptor().getType();
+		int code = linux_event.getDescriptor().getCode();
+		if (type == NativeDefinitions.EV_KEY)
+			updateKeyState(code, linux_event.getValue());
+		else if (type == NativeDefinitions.EV_ABS && code < abs_values.length)
+			abs_values[code] = linux_event.getValue();
+		return true;
 	}
-	private final static native boolean nGetNextEvent(long fd, LinuxEvent linux_event) throws IOException;
-	
+
+	/**
+	 * Returns the number of the frame the last event returned by getNextEvent()
+	 * belongs to. A resync after dropped events is a frame of its own.
+	 */
+	public final synchronized long getFrameNumber() {
+		return frame_number;
+	}
+
+	/* Read events until a frame is complete. Returns false if no complete frame is available */
+	private final boolean readFrames() throws IOException {
+		while (ready_frame.size() == 0) {
+			if (!readEvent(raw_event))
+				return false;
+			int type = raw_event.getDescriptor().getType();
+			int code = raw_event.getDescriptor().getCode();
+			if (type == NativeDefinitions.EV_SYN) {
+				if (code == NativeDefinitions.SYN_REPORT) {
+					if (dropping) {
+						dropping = false;
+						pending_frame.clear();
+						resync(raw_event.getNanos());
+					} else {
+						LinuxEventFrame frame = ready_frame;
+						ready_frame = pending_frame;
+						pending_frame = frame;
+					}
+				} else if (code == NativeDefinitions.SYN_DROPPED) {
+					dropping = true;
+					pending_frame.clear();
+				}
+			} else if (!dropping) {
+				pending_frame.add(raw_event);
+				// don't buffer without bounds for a device that never reports
+				if (pending_frame.size() == MAX_FRAME_SIZE) {
+					LinuxEventFrame frame = ready_frame;
+					ready_frame = pending_frame;
+					pending_frame = frame;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Fetch the key and absolute axis state from the kernel after events were dropped,
+	 * and queue an event for every key and axis that differs from the known state
+	 */
+	private final void resync(long nanos) throws IOException {
+		nGetState(fd, key_states, abs_axes, resync_abs_values);
+		key_states_buffer.clear();
+		key_states_buffer.asLongBuffer().get(resync_key_words);
+		for (int i = 0; i < key_words.length; i++) {
+			long changed = event_key_words[i] ^ resync_key_words[i];
+			while (changed != 0) {
+				int bit = Long.numberOfTrailingZeros(changed);
+				changed &= changed - 1;
+				ready_frame.add(NativeDefinitions.EV_KEY, i*64 + bit, (int)(resync_key_words[i] >>> bit) & 1, nanos);
+			}
+		}
+		for (int i = 0; i < abs_axes.length; i++) {
+			if (resync_abs_values[i] != abs_values[abs_axes[i]])
+				ready_frame.add(NativeDefinitions.EV_ABS, abs_axes[i], resync_abs_values[i], nanos);
+		}
+	}
+	/* Fetches the key states and the values of the given absolute axes in one call */
+	private final static native void nGetState(long fd, byte[] key_states, int[] abs_axes, int[] abs_values) throws IOException;
+
+	private final boolean readEvent(LinuxEvent linux_event) throws IOException {
+		return reader.read(linux_event);
+	}
+
+	/* Keep the key bitmap and key poll data current with the events read; a value of 2 is a key repeat */
+	private final void updateKeyState(int code, int value) {
+		if (code >= key_words.length*64)
+			return;
+		if (value != 0) {
+			key_words[code/64] |= 1L << code;
+			event_key_words[code/64] |= 1L << code;
+		} else {
+			key_words[code/64] &= ~(1L << code);
+			event_key_words[code/64] &= ~(1L << code);
+		}
+		keys_changed = true;
+		LinuxComponent component = key_components[code];
+		if (component != null)
+			component.setPolledData(component.convertValue(value != 0 ? 1 : 0, component.getComponent().getDescriptor()));
+	}
+	/* Reads as many whole events as are available and fit in the buffer. Returns the number of bytes read */
+	final static native int nReadEvents(long fd, ByteBuffer buffer) throws IOException;
+	final static native int nGetEventSize();
+
 	public final synchronized void getAbsInfo(int abs_axis, LinuxAbsInfo abs_info) throws IOException {
 		checkClosed();
 		nGetAbsInfo(fd, abs_axis, abs_info);
 	}
 	private final static native void nGetAbsInfo(long fd, int abs_axis, LinuxAbsInfo abs_info) throws IOException;
 
-	private final void addKeys(List components) throws IOException {
-		byte[] bits = getKeysBits();
+	/**
+	 * Returns the value of an absolute axis. In shadow state mode this is the value of
+	 * the last EV_ABS event read for the axis, or the value when the axis was created.
+	 */
+	public final synchronized int getAbsValue(int abs_axis) throws IOException {
+		if (abs_shadow_state && abs_axis < abs_values.length) {
+			checkClosed();
+			return abs_values[abs_axis];
+		}
+		getAbsInfo(abs_axis, abs_info);
+		return abs_info.getValue();
+	}
+
+	/* Seed the shadow state of an absolute axis from its EVIOCGABS info */
+	final synchronized void initAbsValue(int abs_axis, int value) {
+		if (abs_axis < abs_values.length)
+			abs_values[abs_axis] = value;
+	}
+
+	/* The caller must hold the device lock while using the returned event */
+	final LinuxEvent getLinuxEvent() {
+		return linux_event;
+	}
+
+	private final void addKeys(List components, byte[] bits) throws IOException {
 		for (int i = 0; i < bits.length*8; i++) {
 			if (isBitSet(bits, i)) {
 				Component.Identifier id = LinuxNativeTypesMap.getButtonID(i);
@@ -267,8 +525,7 @@ final class LinuxEventDevice implements LinuxDevice {
 		}
 	}
 
-	private final void addRelativeAxes(List components) throws IOException {
-		byte[] bits = getRelativeAxesBits();
+	private final void addRelativeAxes(List components, byte[] bits) throws IOException {
 		for (int i = 0; i < bits.length*8; i++) {
 			if (isBitSet(bits, i)) {
 				Component.Identifier id = LinuxNativeTypesMap.getRelAxisID(i);
@@ -281,15 +538,31 @@ final class LinuxEventDevice implements LinuxDevice {
 		return components;
 	}
 
+	private final static int[] getAbsoluteAxes(List components) {
+		int num_axes = 0;
+		for (int i = 0; i < components.size(); i++) {
+			if (((LinuxEventComponent)components.get(i)).getDescriptor().getType() == NativeDefinitions.EV_ABS)
+				num_axes++;
+		}
+		int[] axes = new int[num_axes];
+		int index = 0;
+		for (int i = 0; i < components.size(); i++) {
+			LinuxAxisDescriptor descriptor = ((LinuxEventComponent)components.get(i)).getDescriptor();
+			if (descriptor.getType() == NativeDefinitions.EV_ABS)
+				axes[index++] = descriptor.getCode();
+		}
+		return axes;
+	}
+
 	private final List getDeviceComponents() throws IOException {
 		List components = new ArrayList();
 		byte[] evtype_bits = getEventTypeBits();
 		if (isBitSet(evtype_bits, NativeDefinitions.EV_KEY))
-			addKeys(components);
+			addKeys(components, getKeysBits());
 		if (isBitSet(evtype_bits, NativeDefinitions.EV_ABS))
 			addAbsoluteAxes(components);
 		if (isBitSet(evtype_bits, NativeDefinitions.EV_REL))
-			addRelativeAxes(components);
+			addRelativeAxes(components, getRelativeAxesBits());
 		return components;
 	}
 	
@@ -324,13 +597,47 @@ final class LinuxEventDevice implements LinuxDevice {
 	}
 	private final static native void nGetBits(long fd, int ev_type, byte[] evtype_bits) throws IOException;
 
+	/**
+	 * If key events were read since the key states were last fetched, fetch them
+	 * from the kernel and set the poll data of all key components in one pass.
+	 * Otherwise do nothing, so a poll without key events costs nothing per key.
+	 */
 	public final synchronized void pollKeyStates() throws IOException {
+		// every key event already updated its component, and the others poll isKeySet() lazily
+		if (!keys_changed)
+			return;
+		checkClosed();
 		nGetKeyStates(fd, key_states);
+		key_states_buffer.clear();
+		key_states_buffer.asLongBuffer().get(key_words);
+		keys_changed = false;
+		for (int i = 0; i < key_words.length; i++) {
+			long present = key_component_words[i];
+			long states = key_words[i];
+			while (present != 0) {
+				int bit = Long.numberOfTrailingZeros(present);
+				present &= present - 1;
+				LinuxComponent component = key_components[i*64 + bit];
+				float state = (states >>> bit) & 1;
+				component.setPolledData(component.convertValue(state, component.getComponent().getDescriptor()));
+			}
+		}
 	}
 	private final static native void nGetKeyStates(long fd, byte[] states) throws IOException;
 
-	public final boolean isKeySet(int bit) {
-		return isBitSet(key_states, bit);
+	/**
+	 * Stop the kernel from queueing events for this device handle. State
+	 * ioctls and force feedback keep working.
+	 */
+	public final synchronized void muteEvents() throws IOException {
+		checkClosed();
+		// An empty mask for type 0 masks out every event type
+		nSetEventMask(fd, 0, new byte[0]);
+	}
+	private final static native void nSetEventMask(long fd, int type, byte[] codes) throws IOException;
+
+	public final synchronized boolean isKeySet(int bit) {
+		return (key_words[bit/64] & (1L << bit)) != 0;
 	}
 	
 	public final static boolean isBitSet(byte[] bits, int bit) {
@@ -343,6 +650,10 @@ final class LinuxEventDevice implements LinuxDevice {
 	public String getFilename(){
 	    return filename;
 	}
+
+	public final long getFD() {
+		return fd;
+	}
 	
 	private final String getDeviceName() throws IOException {
 		return nGetName(fd);
@@ -360,7 +671,11 @@ final class LinuxEventDevice implements LinuxDevice {
 			}
 		});
 	}
-	private final static native void nClose(long fd) throws IOException;
+	final static native void nClose(long fd) throws IOException;
+
+	public final synchronized boolean isClosed() {
+		return closed;
+	}
 
 	private final void checkClosed() throws IOException {
 		if (closed)
@@ -374,6 +689,7 @@ final class LinuxEventDevice implements LinuxDevice {
 	 */
 	public synchronized final boolean grab(){
 		try{
+			checkClosed();
 			if(nGrab(fd,1) == 0){
 				return false;
 			}	
@@ -387,6 +703,7 @@ final class LinuxEventDevice implements LinuxDevice {
 	 */
 	public synchronized final boolean ungrab(){
 		try{
+			checkClosed();
 			if(nGrab(fd,0) == 0){
 				return false;
 			}	
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2003 Jeremy Booth (jeremy@newdawnsoftware.com)
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this 
+ * list of conditions and the following disclaimer. Redistributions in binary 
+ * form must reproduce the above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 
+ * The name of the author may not be used to endorse or promote products derived
+ * from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO 
+ * EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ */
+package net.java.games.input;
+
+/**
+ * A growable list of evdev events, used to collect the events of
+ * a frame until its SYN_REPORT arrives.
+ */
+final class LinuxEventFrame {
+	private int[] types = new int[16];
+	private int[] codes = new int[16];
+	private int[] values = new int[16];
+	private long[] nanos = new long[16];
+	private int size;
+
+	public final int size() {
+		return size;
+	}
+
+	public final void clear() {
+		size = 0;
+	}
+
+	public final void add(LinuxEvent event) {
+		LinuxAxisDescriptor descriptor = event.getDescriptor();
+		add(descriptor.getType(), descriptor.getCode(), event.getValue(), event.getNanos());
+	}
+
+	public final void add(int type, int code, int value, long event_nanos) {
+		if (size == types.length)
+			grow();
+		types[size] = type;
+		codes[size] = code;
+		values[size] = value;
+		nanos[size] = event_nanos;
+		size++;
+	}
+
+	private final void grow() {
+		int length = types.length*2;
+		int[] new_types = new int[length];
+		int[] new_codes = new int[length];
+		int[] new_values = new int[length];
+		long[] new_nanos = new long[length];
+		System.arraycopy(types, 0, new_types, 0, size);
+		System.arraycopy(codes, 0, new_codes, 0, size);
+		System.arraycopy(values, 0, new_values, 0, size);
+		System.arraycopy(nanos, 0, new_nanos, 0, size);
+		types = new_types;
+		codes = new_codes;
+		values = new_values;
+		nanos = new_nanos;
+	}
+
+	public final void get(int index, LinuxEvent event) {
+		event.set(nanos[index], types[index], codes[index], values[index]);
+	}
+}
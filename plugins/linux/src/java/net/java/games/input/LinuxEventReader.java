@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2003 Jeremy Booth (jeremy@newdawnsoftware.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer. Redistributions in binary
+ * form must reproduce the above copyright notice, this list of conditions and
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ * The name of the author may not be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.java.games.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads struct input_event records from a file descriptor in bulk into a direct
+ * buffer and decodes them. Reads are native, so they only ever return whole events
+ * and ignore thread interrupts. Not thread safe.
+ */
+final class LinuxEventReader {
+	private final ByteBuffer buffer;
+	private final int event_size;
+	private final long fd;
+
+	public LinuxEventReader(long fd, int event_size, int num_events) {
+		this.fd = fd;
+		this.event_size = event_size;
+		this.buffer = ByteBuffer.allocateDirect(num_events*event_size).order(ByteOrder.nativeOrder());
+		buffer.limit(0);
+	}
+
+	/**
+	 * Decodes the next event into linux_event. Returns false if no event is available.
+	 */
+	public final boolean read(LinuxEvent linux_event) throws IOException {
+		if (buffer.remaining() < event_size) {
+			buffer.clear();
+			buffer.limit(LinuxEventDevice.nReadEvents(fd, buffer));
+			if (buffer.remaining() < event_size)
+				return false;
+		}
+		decodeEvent(buffer, event_size, linux_event);
+		return true;
+	}
+
+	/**
+	 * Decodes the struct input_event at the buffer position and advances the position past it.
+	 * The buffer must be in native byte order.
+	 */
+	static final void decodeEvent(ByteBuffer buffer, int event_size, LinuxEvent linux_event) {
+		long seconds;
+		long microseconds;
+		// struct timeval is two native longs
+		if (event_size == 24) {
+			seconds = buffer.getLong();
+			microseconds = buffer.getLong();
+		} else {
+			seconds = buffer.getInt();
+			microseconds = buffer.getInt();
+		}
+		int type = buffer.getShort() & 0xffff;
+		int code = buffer.getShort() & 0xffff;
+		int value = buffer.getInt();
+		linux_event.set(seconds, microseconds, type, code, value);
+	}
+}
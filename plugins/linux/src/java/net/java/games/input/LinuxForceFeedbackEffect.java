@@ -35,19 +35,39 @@ abstract class LinuxForceFeedbackEffect implements Rumbler {
 	private final int ff_id;
 	private final WriteTask write_task = new WriteTask();
 	private final UploadTask upload_task = new UploadTask();
+	private final RumbleTask rumble_task = new RumbleTask();
 	
     public LinuxForceFeedbackEffect(LinuxEventDevice device) throws IOException {
 		this.device = device;
 		this.ff_id = upload_task.doUpload(-1, 0);
+		rumble_task.uploaded_parameters = getParameters(0);
     }
 
 	protected abstract int upload(int id, float intensity) throws IOException;
+
+	/**
+	 * Returns the effect parameters upload() would send for the intensity,
+	 * packed into a long. Equal values mean an upload can be skipped.
+	 */
+	protected abstract long getParameters(float intensity);
 	
 	protected final LinuxEventDevice getDevice() {
 		return device;
 	}
 	
-	public synchronized final void rumble(float intensity) {
+	/**
+	 * In asynchronous mode the request is queued for the device thread and
+	 * this method returns immediately. Requests that arrive before the device
+	 * thread gets to them are collapsed so only the newest intensity is applied.
+	 */
+	public final void rumble(float intensity) {
+		if (LinuxEnvironmentPlugin.isAsyncRumble())
+			rumble_task.request(intensity);
+		else
+			rumbleSynchronously(intensity);
+	}
+
+	private synchronized final void rumbleSynchronously(float intensity) {
 		try {
 			if (intensity > 0) {
 				upload_task.doUpload(ff_id, intensity);
@@ -94,6 +114,37 @@ abstract class LinuxForceFeedbackEffect implements Rumbler {
 		}
 	}
 
+	private final class RumbleTask extends LinuxDeviceTask {
+		private volatile float intensity;
+		/* Only accessed from the device thread */
+		private long uploaded_parameters;
+
+		public final void request(float intensity) {
+			this.intensity = intensity;
+			LinuxEnvironmentPlugin.submit(this);
+		}
+
+		protected final Object execute() {
+			float intensity = this.intensity;
+			try {
+				if (intensity > 0) {
+					long parameters = getParameters(intensity);
+					if (parameters != uploaded_parameters) {
+						upload(ff_id, intensity);
+						uploaded_parameters = parameters;
+					}
+					device.writeEvent(NativeDefinitions.EV_FF, ff_id, 1);
+				} else {
+					device.writeEvent(NativeDefinitions.EV_FF, ff_id, 0);
+				}
+			} catch (IOException e) {
+				// nobody waits for the result, so report it here
+				LinuxEnvironmentPlugin.logln("Failed to rumble: " + e);
+			}
+			return null;
+		}
+	}
+
 	private final class WriteTask extends LinuxDeviceTask {
 		private int value;
 
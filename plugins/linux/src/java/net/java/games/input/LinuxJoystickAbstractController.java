@@ -52,16 +52,22 @@ final class LinuxJoystickAbstractController extends AbstractController {
 		this.device = device;
 	}
 
-	protected final void setDeviceEventQueueSize(int size) throws IOException {
-		device.setBufferSize(size);
+	protected final Object getBackingDevice() {
+		return device;
 	}
 
 	public final void pollDevice() throws IOException {
-		device.poll();
+		device.poll(this);
+	}
+
+	/* Poll the device on behalf of a controller sharing its components */
+	final void pollDevice(AbstractController controller) throws IOException {
+		device.poll(controller);
 	}
 
 	protected final boolean getNextDeviceEvent(Event event) throws IOException {
-		return device.getNextEvent(event);
+		// Events are dispatched by pollDevice()
+		return false;
 	}
 
 	public Type getType() {
@@ -26,8 +26,6 @@
 package net.java.games.input;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.HashMap;
 
 /**
  * @author elias
@@ -43,16 +41,10 @@ final class LinuxJoystickDevice implements LinuxDevice {
 	private final String name;
     private final String filename;
 	private final LinuxJoystickEvent joystick_event = new LinuxJoystickEvent();
-	private final Event event = new Event();
-	private final LinuxJoystickButton[] buttons;
-	private final LinuxJoystickAxis[] axes;
-	private final Map povXs = new HashMap(); 
-	private final Map povYs = new HashMap(); 
+	private final LinuxJoystickDispatcher dispatcher;
 	private final byte[] axisMap;
 	private final char[] buttonMap;
 
-	private EventQueue event_queue;
-
 	/* Closed state variable that protects the validity of the file descriptor.
 	 *  Access to the closed state must be synchronized
 	 */
@@ -63,9 +55,7 @@ final class LinuxJoystickDevice implements LinuxDevice {
 		try {
 			this.name = getDeviceName();
 			this.filename = filename;
-			setBufferSize(AbstractController.EVENT_QUEUE_DEPTH);
-			buttons = new LinuxJoystickButton[getNumDeviceButtons()];
-			axes = new LinuxJoystickAxis[getNumDeviceAxes()];
+			dispatcher = new LinuxJoystickDispatcher(getNumDeviceButtons(), getNumDeviceAxes());
 			axisMap = getDeviceAxisMap();
 			buttonMap = getDeviceButtonMap();
 		} catch (IOException e) {
@@ -75,92 +65,26 @@ final class LinuxJoystickDevice implements LinuxDevice {
     }
 	private final static native long nOpen(String filename) throws IOException;
 
-	public final synchronized void setBufferSize(int size) {
-		event_queue = new EventQueue(size);
-	}
-
-	private final void processEvent(LinuxJoystickEvent joystick_event) {
-		int index = joystick_event.getNumber();
-		// Filter synthetic init event flag
-		int type = joystick_event.getType() & ~JS_EVENT_INIT;
-		switch (type) {
-			case JS_EVENT_BUTTON:
-				if (index < getNumButtons()) {
-					LinuxJoystickButton button = buttons[index];
-					if (button != null) {
-						float value = joystick_event.getValue();
-						button.setValue(value);
-						event.set(button, value, joystick_event.getNanos());
-						break;
-					}
-				}
-				return;
-			case JS_EVENT_AXIS:
-				if (index < getNumAxes()) {
-					LinuxJoystickAxis axis = axes[index];
-					if (axis != null) {
-						float value = (float)joystick_event.getValue()/AXIS_MAX_VALUE;
-						axis.setValue(value);
-						if(povXs.containsKey(new Integer(index))) {
-							LinuxJoystickPOV pov = (LinuxJoystickPOV)(povXs.get(new Integer(index)));
-							pov.updateValue();
-							event.set(pov, pov.getPollData(), joystick_event.getNanos());
-						} else if(povYs.containsKey(new Integer(index))) {
-							LinuxJoystickPOV pov = (LinuxJoystickPOV)(povYs.get(new Integer(index)));
-							pov.updateValue();
-							event.set(pov, pov.getPollData(), joystick_event.getNanos());
-						} else {
-							event.set(axis, value, joystick_event.getNanos());
-						}
-						break;
-					}
-				}
-				return;
-			default:
-				// Unknown component type
-				return;
-		}
-		if (!event_queue.isFull()) {
-			event_queue.add(event);
-		}
-	}
-
 	public final void registerAxis(int index, LinuxJoystickAxis axis) {
-		axes[index] = axis;
+		dispatcher.registerAxis(index, axis);
 	}
 
 	public final void registerButton(int index, LinuxJoystickButton button) {
-		buttons[index] = button;
+		dispatcher.registerButton(index, button);
 	}
 	
 	public final void registerPOV(LinuxJoystickPOV pov) {
-		// The x and y on a joystick device are not the same as on an event device
-		LinuxJoystickAxis xAxis = pov.getYAxis();
-		LinuxJoystickAxis yAxis = pov.getXAxis(); 
-		int xIndex;
-		int yIndex;
-		for(xIndex=0;xIndex<axes.length;xIndex++) {
-			if(axes[xIndex]==xAxis) {
-				break;
-			}
-		}
-		for(yIndex=0;yIndex<axes.length;yIndex++) {
-			if(axes[yIndex]==yAxis) {
-				break;
-			}
-		}
-		povXs.put(new Integer(xIndex),pov);
-		povYs.put(new Integer(yIndex),pov);
+		dispatcher.registerPOV(pov);
 	}
 
-	public final synchronized boolean getNextEvent(Event event) throws IOException {
-		return event_queue.getNextEvent(event);
-	}
-
-	public final synchronized void poll() throws IOException {
+	/**
+	 * Read the pending device events and dispatch them directly to the
+	 * given controller, which must be polling
+	 */
+	public final synchronized void poll(AbstractController controller) throws IOException {
 		checkClosed();
 		while (getNextDeviceEvent(joystick_event)) {
-			processEvent(joystick_event);
+			dispatcher.dispatch(joystick_event, controller);
 		}
 	}
 
@@ -170,11 +94,11 @@ final class LinuxJoystickDevice implements LinuxDevice {
 	private final static native boolean nGetNextEvent(long fd, LinuxJoystickEvent joystick_event) throws IOException;
 
 	public final int getNumAxes() {
-		return axes.length;
+		return dispatcher.getNumAxes();
 	}
 
 	public final int getNumButtons() {
-		return buttons.length;
+		return dispatcher.getNumButtons();
 	}
 	
 	public final byte[] getAxisMap() {
@@ -227,6 +151,10 @@ final class LinuxJoystickDevice implements LinuxDevice {
 	}
 	private final static native void nClose(long fd) throws IOException;
 
+	public final synchronized boolean isClosed() {
+		return closed;
+	}
+
 	private final void checkClosed() throws IOException {
 		if (closed)
 			throw new IOException("Device is closed");
@@ -237,6 +165,10 @@ final class LinuxJoystickDevice implements LinuxDevice {
 	}
 
 
+	public final long getFD() {
+		return fd;
+	}
+
 	@Override
 	public String getFilename() {
 		return filename;
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2003 Jeremy Booth (jeremy@newdawnsoftware.com)
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this 
+ * list of conditions and the following disclaimer. Redistributions in binary 
+ * form must reproduce the above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or other materials provided
+ * with the distribution. 
+ * The name of the author may not be used to endorse or promote products derived
+ * from this software without specific prior written permission. 
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO 
+ * EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ */
+package net.java.games.input;
+
+/**
+ * Maps joystick js_event button and axis numbers to their components and
+ * dispatches the events to a controller. Axes that are part of a hat are
+ * dispatched as changes of their POV. Looking up and dispatching an event
+ * allocates nothing. Not thread safe.
+ */
+final class LinuxJoystickDispatcher {
+	private final Event event = new Event();
+	private final LinuxJoystickButton[] buttons;
+	private final LinuxJoystickAxis[] axes;
+	/* The POV each axis index feeds, or null for plain axes */
+	private final LinuxJoystickPOV[] axis_povs;
+
+	public LinuxJoystickDispatcher(int num_buttons, int num_axes) {
+		this.buttons = new LinuxJoystickButton[num_buttons];
+		this.axes = new LinuxJoystickAxis[num_axes];
+		this.axis_povs = new LinuxJoystickPOV[num_axes];
+	}
+
+	public final int getNumAxes() {
+		return axes.length;
+	}
+
+	public final int getNumButtons() {
+		return buttons.length;
+	}
+
+	public final void registerAxis(int index, LinuxJoystickAxis axis) {
+		axes[index] = axis;
+	}
+
+	public final void registerButton(int index, LinuxJoystickButton button) {
+		buttons[index] = button;
+	}
+
+	public final void registerPOV(LinuxJoystickPOV pov) {
+		// The x and y on a joystick device are not the same as on an event device
+		LinuxJoystickAxis xAxis = pov.getYAxis();
+		LinuxJoystickAxis yAxis = pov.getXAxis();
+		int xIndex;
+		int yIndex;
+		for(xIndex=0;xIndex<axes.length;xIndex++) {
+			if(axes[xIndex]==xAxis) {
+				break;
+			}
+		}
+		for(yIndex=0;yIndex<axes.length;yIndex++) {
+			if(axes[yIndex]==yAxis) {
+				break;
+			}
+		}
+		if (xIndex < axis_povs.length)
+			axis_povs[xIndex] = pov;
+		if (yIndex < axis_povs.length)
+			axis_povs[yIndex] = pov;
+	}
+
+	/**
+	 * Update the component of the event and dispatch the change to the
+	 * controller, which must be polling. Events of unknown components are ignored.
+	 */
+	public final void dispatch(LinuxJoystickEvent joystick_event, AbstractController controller) {
+		int index = joystick_event.getNumber();
+		// Filter synthetic init event flag
+		int type = joystick_event.getType() & ~LinuxJoystickDevice.JS_EVENT_INIT;
+		switch (type) {
+			case LinuxJoystickDevice.JS_EVENT_BUTTON:
+				if (index < buttons.length) {
+					LinuxJoystickButton button = buttons[index];
+					if (button != null) {
+						float value = joystick_event.getValue();
+						button.setValue(value);
+						event.set(button, value, joystick_event.getNanos());
+						break;
+					}
+				}
+				return;
+			case LinuxJoystickDevice.JS_EVENT_AXIS:
+				if (index < axes.length) {
+					LinuxJoystickAxis axis = axes[index];
+					if (axis != null) {
+						float value = (float)joystick_event.getValue()/LinuxJoystickDevice.AXIS_MAX_VALUE;
+						axis.setValue(value);
+						LinuxJoystickPOV pov = axis_povs[index];
+						if (pov != null) {
+							pov.updateValue();
+							event.set(pov, pov.getPollData(), joystick_event.getNanos());
+						} else {
+							event.set(axis, value, joystick_event.getNanos());
+						}
+						break;
+					}
+				}
+				return;
+			default:
+				// Unknown component type
+				return;
+		}
+		controller.dispatchEvent(event);
+	}
+}
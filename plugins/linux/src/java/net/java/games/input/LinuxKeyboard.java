@@ -62,6 +62,10 @@ final class LinuxKeyboard extends Keyboard {
 		return LinuxControllers.getNextDeviceEvent(event, device);
 	}
 
+	protected final Object getBackingDevice() {
+		return device;
+	}
+
 	public final void pollDevice() throws IOException {
 			device.pollKeyStates();
 	}
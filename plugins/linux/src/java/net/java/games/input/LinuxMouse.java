@@ -58,6 +58,10 @@ final class LinuxMouse extends Mouse {
 		return port;
 	}
 
+	protected final Object getBackingDevice() {
+		return device;
+	}
+
 	public final void pollDevice() throws IOException {
 			device.pollKeyStates();
 	}
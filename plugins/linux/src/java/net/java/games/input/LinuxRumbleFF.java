@@ -36,19 +36,24 @@ final class LinuxRumbleFF extends LinuxForceFeedbackEffect {
     }
 
 	protected final int upload(int id, float intensity) throws IOException {
-		int weak_magnitude;
-		int strong_magnitude;
-		if (intensity > 0.666666f) {
-			strong_magnitude = (int)(0x8000*intensity);
-			weak_magnitude = (int)(0xc000*intensity);
-		} else if (intensity > 0.3333333f) {
-			strong_magnitude = (int)(0x8000*intensity);
-			weak_magnitude = (int)(0xc000*0);
-		} else {
-			strong_magnitude = (int)(0x8000*0);
-			weak_magnitude = (int)(0xc000*intensity);
-		}
+		return getDevice().uploadRumbleEffect(id, 0, 0, 0, -1, 0, getStrongMagnitude(intensity), getWeakMagnitude(intensity));
+	}
+
+	protected final long getParameters(float intensity) {
+		return ((long)getStrongMagnitude(intensity) << 32) | (getWeakMagnitude(intensity) & 0xffffffffL);
+	}
+
+	private final static int getStrongMagnitude(float intensity) {
+		if (intensity > 0.3333333f)
+			return (int)(0x8000*intensity);
+		else
+			return 0;
+	}
 
-		return getDevice().uploadRumbleEffect(id, 0, 0, 0, -1, 0, strong_magnitude, weak_magnitude);
+	private final static int getWeakMagnitude(float intensity) {
+		if (intensity > 0.666666f || intensity <= 0.3333333f)
+			return (int)(0xc000*intensity);
+		else
+			return 0;
 	}
 }
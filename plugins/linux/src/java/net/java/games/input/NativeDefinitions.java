@@ -18,6 +18,11 @@ class NativeDefinitions {
     public static final int EV_PWR = 0x16;
     public static final int EV_FF_STATUS = 0x17;
     public static final int EV_MAX = 0x1f;
+    public static final int SYN_REPORT = 0;
+    public static final int SYN_CONFIG = 1;
+    public static final int SYN_MT_REPORT = 2;
+    public static final int SYN_DROPPED = 3;
+    public static final int SYN_MAX = 0xf;
     public static final int KEY_RESERVED = 0;
     public static final int KEY_ESC = 1;
     public static final int KEY_1 = 2;
@@ -0,0 +1,96 @@
+/*
+ * %W% %E%
+ *
+ * Copyright 2002 Sun Microsystems, Inc. All rights reserved.
+ * SUN PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+/*****************************************************************************
+* Copyright (c) 2003 Sun Microsystems, Inc.  All Rights Reserved.
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* - Redistribution of source code must retain the above copyright notice,
+*   this list of conditions and the following disclaimer.
+*
+* - Redistribution in binary form must reproduce the above copyright notice,
+*   this list of conditions and the following disclaimer in the documentation
+*   and/or other materails provided with the distribution.
+*
+* Neither the name Sun Microsystems, Inc. or the names of the contributors
+* may be used to endorse or promote products derived from this software
+* without specific prior written permission.
+*
+* This software is provided "AS IS," without a warranty of any kind.
+* ALL EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES, INCLUDING
+* ANY IMPLIED WARRANT OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE OR
+* NON-INFRINGEMEN, ARE HEREBY EXCLUDED.  SUN MICROSYSTEMS, INC. ("SUN") AND
+* ITS LICENSORS SHALL NOT BE LIABLE FOR ANY DAMAGES SUFFERED BY LICENSEE AS
+* A RESULT OF USING, MODIFYING OR DESTRIBUTING THIS SOFTWARE OR ITS 
+* DERIVATIVES.  IN NO EVENT WILL SUN OR ITS LICENSORS BE LIABLE FOR ANY LOST
+* REVENUE, PROFIT OR DATA, OR FOR DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL,
+* INCIDENTAL OR PUNITIVE DAMAGES.  HOWEVER CAUSED AND REGARDLESS OF THE THEORY
+* OF LIABILITY, ARISING OUT OF THE USE OF OUR INABILITY TO USE THIS SOFTWARE,
+* EVEN IF SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+*
+* You acknowledge that this software is not designed or intended for us in
+* the design, construction, operation or maintenance of any nuclear facility
+*
+*****************************************************************************/
+
+#include <sys/epoll.h>
+#include <unistd.h>
+#include <errno.h>
+#include "util.h"
+#include "net_java_games_input_LinuxEPoll.h"
+
+#define MAX_EVENTS 64
+
+JNIEXPORT jlong JNICALL Java_net_java_games_input_LinuxEPoll_nCreate(JNIEnv *env, jclass unused) {
+	int epfd = epoll_create1(EPOLL_CLOEXEC);
+	if (epfd == -1)
+		throwIOException(env, "Failed to create epoll instance (%d)\n", errno);
+	return epfd;
+}
+
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEPoll_nAdd(JNIEnv *env, jclass unused, jlong epfd_address, jlong fd_address, jint token) {
+	int epfd = (int)epfd_address;
+	int fd = (int)fd_address;
+	struct epoll_event event;
+	event.events = EPOLLIN;
+	event.data.u64 = 0;
+	event.data.u32 = (uint32_t)token;
+	if (epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &event) == -1)
+		throwIOException(env, "Failed to add device to epoll instance (%d)\n", errno);
+}
+
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEPoll_nWait(JNIEnv *env, jclass unused, jlong epfd_address, jintArray tokens_array, jint timeout_millis) {
+	int epfd = (int)epfd_address;
+	struct epoll_event events[MAX_EVENTS];
+	jsize len = (*env)->GetArrayLength(env, tokens_array);
+	int max_events = len < MAX_EVENTS ? len : MAX_EVENTS;
+	if (max_events <= 0)
+		return 0;
+	int num_events = epoll_wait(epfd, events, max_events, timeout_millis);
+	if (num_events == -1) {
+		if (errno == EINTR)
+			return 0;
+		throwIOException(env, "Failed to wait for device events (%d)\n", errno);
+		return -1;
+	}
+	jint tokens[MAX_EVENTS];
+	int i;
+	for (i = 0; i < num_events; i++) {
+		tokens[i] = (jint)events[i].data.u32;
+		/* A hung up descriptor stays ready forever, so flag it for the caller */
+		if (events[i].events & (EPOLLHUP | EPOLLERR))
+			tokens[i] = -tokens[i] - 1;
+	}
+	(*env)->SetIntArrayRegion(env, tokens_array, 0, num_events, tokens);
+	return num_events;
+}
+
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEPoll_nClose(JNIEnv *env, jclass unused, jlong epfd_address) {
+	int epfd = (int)epfd_address;
+	if (close(epfd) == -1)
+		throwIOException(env, "Failed to close epoll instance (%d)\n", errno);
+}
@@ -0,0 +1,45 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class net_java_games_input_LinuxEPoll */
+
+#ifndef _Included_net_java_games_input_LinuxEPoll
+#define _Included_net_java_games_input_LinuxEPoll
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     net_java_games_input_LinuxEPoll
+ * Method:    nCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_net_java_games_input_LinuxEPoll_nCreate
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     net_java_games_input_LinuxEPoll
+ * Method:    nAdd
+ * Signature: (JJI)V
+ */
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEPoll_nAdd
+  (JNIEnv *, jclass, jlong, jlong, jint);
+
+/*
+ * Class:     net_java_games_input_LinuxEPoll
+ * Method:    nWait
+ * Signature: (J[II)I
+ */
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEPoll_nWait
+  (JNIEnv *, jclass, jlong, jintArray, jint);
+
+/*
+ * Class:     net_java_games_input_LinuxEPoll
+ * Method:    nClose
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEPoll_nClose
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -47,6 +47,27 @@
 #include "util.h"
 #include "net_java_games_input_LinuxEventDevice.h"
 
+/* Method IDs are looked up once when the library is loaded */
+static jclass abs_info_class;
+static jmethodID abs_info_set;
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+	JNIEnv *env;
+	if ((*vm)->GetEnv(vm, (void **)&env, JNI_VERSION_1_4) != JNI_OK)
+		return JNI_ERR;
+	jclass local_abs_info_class = (*env)->FindClass(env, "net/java/games/input/LinuxAbsInfo");
+	if (local_abs_info_class == NULL)
+		return JNI_ERR;
+	abs_info_class = (*env)->NewGlobalRef(env, local_abs_info_class);
+	(*env)->DeleteLocalRef(env, local_abs_info_class);
+	if (abs_info_class == NULL)
+		return JNI_ERR;
+	abs_info_set = (*env)->GetMethodID(env, abs_info_class, "set", "(IIIII)V");
+	if (abs_info_set == NULL)
+		return JNI_ERR;
+	return JNI_VERSION_1_4;
+}
+
 JNIEXPORT jlong JNICALL Java_net_java_games_input_LinuxEventDevice_nOpen(JNIEnv *env, jclass unused, jstring path, jboolean rw_flag) {
 	const char *path_str = (*env)->GetStringUTFChars(env, path, NULL);
 	if (path_str == NULL)
@@ -60,6 +81,17 @@ JNIEXPORT jlong JNICALL Java_net_java_games_input_LinuxEventDevice_nOpen(JNIEnv
 	return fd;
 }
 
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nSetClockID(JNIEnv *env, jclass unused, jlong fd_address, jint clock_id) {
+#ifdef EVIOCSCLOCKID
+	int fd = (int)fd_address;
+	int id = clock_id;
+	if (ioctl(fd, EVIOCSCLOCKID, &id) == -1)
+		throwIOException(env, "Failed to set event clock (%d)\n", errno);
+#else
+	throwIOException(env, "Setting the event clock is not supported\n");
+#endif
+}
+
 JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nClose(JNIEnv *env, jclass unused, jlong fd_address) {
 	int fd = (int)fd_address;
 	int result = close(fd);
@@ -92,6 +124,68 @@ JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetKeyStates(
 		throwIOException(env, "Failed to get device key states (%d)\n", errno);
 }
 
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nSetEventMask(JNIEnv *env, jclass unused, jlong fd_address, jint type, jbyteArray codes_array) {
+#ifdef EVIOCSMASK
+	int fd = (int)fd_address;
+	jsize len = (*env)->GetArrayLength(env, codes_array);
+	jbyte *codes = (*env)->GetByteArrayElements(env, codes_array, NULL);
+	if (codes == NULL)
+		return;
+	struct input_mask mask;
+	mask.type = type;
+	mask.codes_size = len;
+	mask.codes_ptr = (unsigned long)codes;
+	int res = ioctl(fd, EVIOCSMASK, &mask);
+	int error = errno;
+	(*env)->ReleaseByteArrayElements(env, codes_array, codes, JNI_ABORT);
+	if (res == -1)
+		throwIOException(env, "Failed to set event mask (%d)\n", error);
+#else
+	throwIOException(env, "Setting the event mask is not supported\n");
+#endif
+}
+
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetState(JNIEnv *env, jclass unused, jlong fd_address, jbyteArray key_bits_array, jintArray abs_axes_array, jintArray abs_values_array) {
+	int fd = (int)fd_address;
+	jsize key_len = (*env)->GetArrayLength(env, key_bits_array);
+	jsize num_axes = (*env)->GetArrayLength(env, abs_axes_array);
+	if ((*env)->GetArrayLength(env, abs_values_array) < num_axes) {
+		throwIOException(env, "Absolute value array too small\n");
+		return;
+	}
+	jbyte *key_bits = (*env)->GetByteArrayElements(env, key_bits_array, NULL);
+	if (key_bits == NULL)
+		return;
+	int res = ioctl(fd, EVIOCGKEY(key_len), key_bits);
+	(*env)->ReleaseByteArrayElements(env, key_bits_array, key_bits, 0);
+	if (res == -1) {
+		throwIOException(env, "Failed to get device key states (%d)\n", errno);
+		return;
+	}
+	jint *abs_axes = (*env)->GetIntArrayElements(env, abs_axes_array, NULL);
+	if (abs_axes == NULL)
+		return;
+	jint *abs_values = (*env)->GetIntArrayElements(env, abs_values_array, NULL);
+	if (abs_values == NULL) {
+		(*env)->ReleaseIntArrayElements(env, abs_axes_array, abs_axes, JNI_ABORT);
+		return;
+	}
+	struct input_absinfo abs_info;
+	int error = 0;
+	int i;
+	for (i = 0; i < num_axes; i++) {
+		if (ioctl(fd, EVIOCGABS(abs_axes[i]), &abs_info) == -1) {
+			error = errno;
+			break;
+		}
+		abs_values[i] = abs_info.value;
+	}
+	(*env)->ReleaseIntArrayElements(env, abs_values_array, abs_values, 0);
+	(*env)->ReleaseIntArrayElements(env, abs_axes_array, abs_axes, JNI_ABORT);
+	if (error != 0)
+		throwIOException(env, "Failed to get abs info for axis (%d)\n", error);
+}
+
 JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nGetVersion(JNIEnv *env, jclass unused, jlong fd_address) {
 	int fd = (int)fd_address;
 	int version;
@@ -143,12 +237,6 @@ JNIEXPORT jobject JNICALL Java_net_java_games_input_LinuxEventDevice_nGetInputID
 
 JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetAbsInfo(JNIEnv *env, jclass unused, jlong fd_address, jint abs_axis, jobject abs_info_return) {
 	int fd = (int)fd_address;
-	jclass abs_info_class = (*env)->GetObjectClass(env, abs_info_return);
-	if (abs_info_class == NULL)
-		return;
-	jmethodID abs_info_set = (*env)->GetMethodID(env, abs_info_class, "set", "(IIIII)V");
-	if (abs_info_set == NULL)
-		return;
 	struct input_absinfo abs_info;
 	int result = ioctl(fd, EVIOCGABS(abs_axis), &abs_info);
 	if (result == -1) {
@@ -158,23 +246,28 @@ JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetAbsInfo(JN
 	(*env)->CallVoidMethod(env, abs_info_return, abs_info_set, (jint)abs_info.value, (jint)abs_info.minimum, (jint)abs_info.maximum, (jint)abs_info.fuzz, (jint)abs_info.flat);
 }
 
-JNIEXPORT jboolean JNICALL Java_net_java_games_input_LinuxEventDevice_nGetNextEvent(JNIEnv *env, jclass unused, jlong fd_address, jobject linux_event_return) {
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nGetEventSize(JNIEnv *env, jclass unused) {
+	return sizeof(struct input_event);
+}
+
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nReadEvents(JNIEnv *env, jclass unused, jlong fd_address, jobject buffer) {
 	int fd = (int)fd_address;
-	jclass linux_event_class = (*env)->GetObjectClass(env, linux_event_return);
-	if (linux_event_class == NULL)
-		return JNI_FALSE;
-	jmethodID linux_event_set = (*env)->GetMethodID(env, linux_event_class, "set", "(JJIII)V");
-	if (linux_event_set == NULL)
-		return JNI_FALSE;
-	struct input_event event;
-	if (read(fd, &event, sizeof(struct input_event)) == -1) {
+	void *events = (*env)->GetDirectBufferAddress(env, buffer);
+	jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+	if (events == NULL || capacity < (jlong)sizeof(struct input_event)) {
+		throwIOException(env, "Invalid event buffer\n");
+		return -1;
+	}
+	/* The kernel only ever returns whole events */
+	size_t max_bytes = capacity - capacity%sizeof(struct input_event);
+	ssize_t num_bytes = read(fd, events, max_bytes);
+	if (num_bytes == -1) {
 		if (errno == EAGAIN)
-			return JNI_FALSE;
-		throwIOException(env, "Failed to read next device event (%d)\n", errno);
-		return JNI_FALSE;
+			return 0;
+		throwIOException(env, "Failed to read device events (%d)\n", errno);
+		return -1;
 	}
-	(*env)->CallVoidMethod(env, linux_event_return, linux_event_set, (jlong)event.time.tv_sec, (jlong)event.time.tv_usec, (jint)event.type, (jint)event.code, (jint)event.value);
-	return JNI_TRUE;
+	return (jint)num_bytes;
 }
 
 JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nUploadRumbleEffect(JNIEnv *env, jclass unused, jlong fd_address, jint id, jint direction, jint trigger_button, jint trigger_interval, jint replay_length, jint replay_delay, jint strong_magnitude, jint weak_magnitude) {
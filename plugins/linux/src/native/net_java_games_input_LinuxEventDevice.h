@@ -7,6 +7,12 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef net_java_games_input_LinuxEventDevice_EVENT_BUFFER_SIZE
+#define net_java_games_input_LinuxEventDevice_EVENT_BUFFER_SIZE 64L
+#undef net_java_games_input_LinuxEventDevice_MAX_FRAME_SIZE
+#define net_java_games_input_LinuxEventDevice_MAX_FRAME_SIZE 1024L
+#undef net_java_games_input_LinuxEventDevice_CLOCK_MONOTONIC
+#define net_java_games_input_LinuxEventDevice_CLOCK_MONOTONIC 1L
 /*
  * Class:     net_java_games_input_LinuxEventDevice
  * Method:    nOpen
@@ -15,6 +21,14 @@ extern "C" {
 JNIEXPORT jlong JNICALL Java_net_java_games_input_LinuxEventDevice_nOpen
   (JNIEnv *, jclass, jstring, jboolean);
 
+/*
+ * Class:     net_java_games_input_LinuxEventDevice
+ * Method:    nSetClockID
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nSetClockID
+  (JNIEnv *, jclass, jlong, jint);
+
 /*
  * Class:     net_java_games_input_LinuxEventDevice
  * Method:    nUploadRumbleEffect
@@ -73,12 +87,28 @@ JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nGetVersion
 
 /*
  * Class:     net_java_games_input_LinuxEventDevice
- * Method:    nGetNextEvent
- * Signature: (JLnet/java/games/input/LinuxEvent;)Z
+ * Method:    nGetState
+ * Signature: (J[B[I[I)V
+ */
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetState
+  (JNIEnv *, jclass, jlong, jbyteArray, jintArray, jintArray);
+
+/*
+ * Class:     net_java_games_input_LinuxEventDevice
+ * Method:    nReadEvents
+ * Signature: (JLjava/nio/ByteBuffer;)I
  */
-JNIEXPORT jboolean JNICALL Java_net_java_games_input_LinuxEventDevice_nGetNextEvent
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nReadEvents
   (JNIEnv *, jclass, jlong, jobject);
 
+/*
+ * Class:     net_java_games_input_LinuxEventDevice
+ * Method:    nGetEventSize
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_net_java_games_input_LinuxEventDevice_nGetEventSize
+  (JNIEnv *, jclass);
+
 /*
  * Class:     net_java_games_input_LinuxEventDevice
  * Method:    nGetAbsInfo
@@ -103,6 +133,14 @@ JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetBits
 JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nGetKeyStates
   (JNIEnv *, jclass, jlong, jbyteArray);
 
+/*
+ * Class:     net_java_games_input_LinuxEventDevice
+ * Method:    nSetEventMask
+ * Signature: (JI[B)V
+ */
+JNIEXPORT void JNICALL Java_net_java_games_input_LinuxEventDevice_nSetEventMask
+  (JNIEnv *, jclass, jlong, jint, jbyteArray);
+
 /*
  * Class:     net_java_games_input_LinuxEventDevice
  * Method:    nGetName
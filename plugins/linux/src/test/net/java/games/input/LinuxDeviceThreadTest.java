@@ -0,0 +1,117 @@
+/*
+ * LinuxDeviceThreadTest.java
+ */
+package net.java.games.input;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Checks which LinuxDeviceThread tasks are coalesced, and reports the latency
+ * of execute() and submit() for tasks that do nothing. A task object submitted
+ * again while its run is queued must run once. Two task objects must both run.
+ * Needs no evdev devices and no native library.
+ *
+ * Usage: LinuxDeviceThreadTest [calls]
+ */
+public class LinuxDeviceThreadTest {
+	/* Tasks queued by submit() before the queue is drained */
+	private final static int SUBMIT_BATCH = 1000;
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	private final static class CountingTask extends LinuxDeviceTask {
+		private int runs;
+
+		protected final Object execute() {
+			runs++;
+			return null;
+		}
+	}
+
+	private final static class BlockingTask extends LinuxDeviceTask {
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		protected final Object execute() {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}
+	}
+
+	private static void testCoalescing(LinuxDeviceThread device_thread) throws IOException, InterruptedException, ExecutionException {
+		BlockingTask blocker = new BlockingTask();
+		CountingTask task = new CountingTask();
+		CountingTask other_task = new CountingTask();
+		device_thread.submit(blocker);
+		Future<Object> first = device_thread.submit(task);
+		for (int i = 0; i < 100; i++)
+			check(device_thread.submit(task) == first, "Resubmitting a queued task queued another run");
+		device_thread.submit(other_task);
+		blocker.release.countDown();
+		first.get();
+		// runs in submission order, so this waits for other_task too
+		device_thread.execute(new CountingTask());
+		check(task.runs == 1, "Resubmitted task ran " + task.runs + " times");
+		check(other_task.runs == 1, "Second task for the same thread ran " + other_task.runs + " times");
+		System.out.println("coalescing ok");
+	}
+
+	private static void report(String name, long[] nanos) {
+		Arrays.sort(nanos);
+		System.out.println(String.format("%-8s p50 %7.2fus  p90 %7.2fus  p99 %7.2fus  p99.9 %7.2fus", name,
+				nanos[nanos.length/2]/1000.0, nanos[nanos.length*9/10]/1000.0,
+				nanos[nanos.length*99/100]/1000.0, nanos[nanos.length*999/1000]/1000.0));
+	}
+
+	private static long[] measureExecute(LinuxDeviceThread device_thread, int calls) throws IOException {
+		CountingTask task = new CountingTask();
+		long[] nanos = new long[calls];
+		for (int i = 0; i < calls; i++) {
+			long start = System.nanoTime();
+			device_thread.execute(task);
+			nanos[i] = System.nanoTime() - start;
+		}
+		return nanos;
+	}
+
+	private static long[] measureSubmit(LinuxDeviceThread device_thread, int calls) throws IOException {
+		CountingTask[] tasks = new CountingTask[SUBMIT_BATCH];
+		for (int i = 0; i < tasks.length; i++)
+			tasks[i] = new CountingTask();
+		CountingTask drain = new CountingTask();
+		long[] nanos = new long[calls - calls%SUBMIT_BATCH];
+		for (int i = 0; i < nanos.length; i += SUBMIT_BATCH) {
+			for (int j = 0; j < SUBMIT_BATCH; j++) {
+				long start = System.nanoTime();
+				device_thread.submit(tasks[j]);
+				nanos[i + j] = System.nanoTime() - start;
+			}
+			device_thread.execute(drain);
+		}
+		return nanos;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 400000;
+		LinuxDeviceThread device_thread = new LinuxDeviceThread();
+		testCoalescing(device_thread);
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + calls + " calls");
+		// warm up
+		measureExecute(device_thread, calls/4);
+		measureSubmit(device_thread, calls/4);
+		report("execute", measureExecute(device_thread, calls));
+		report("submit", measureSubmit(device_thread, calls));
+	}
+}
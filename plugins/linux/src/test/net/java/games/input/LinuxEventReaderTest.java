@@ -0,0 +1,142 @@
+/*
+ * LinuxEventReaderTest.java
+ */
+package net.java.games.input;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes recorded struct input_event records, in both the 64 bit and 32 bit
+ * layouts, and checks the decoded events. Then it feeds records of the native
+ * layout through a FIFO to LinuxEventReader, in writes of a few events so the
+ * reader refills its buffer often, and reads them again while the thread is
+ * interrupted, which must neither fail nor close the file descriptor.
+ * Needs no evdev devices.
+ *
+ * Usage: LinuxEventReaderTest [events]
+ */
+public class LinuxEventReaderTest {
+	/* Events fetched per read, small to force many refills */
+	private final static int BUFFER_EVENTS = 4;
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	private static int type(int i) {
+		return (i & 1) == 0 ? NativeDefinitions.EV_KEY : NativeDefinitions.EV_SYN;
+	}
+
+	/* Negative values check the sign of the value field */
+	private static int value(int i) {
+		return i*3 - 7;
+	}
+
+	private static ByteBuffer record(int num_events, int event_size) {
+		ByteBuffer buffer = ByteBuffer.allocate(num_events*event_size).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < num_events; i++) {
+			if (event_size == 24) {
+				buffer.putLong(1000 + i);
+				buffer.putLong(i*10);
+			} else {
+				buffer.putInt(1000 + i);
+				buffer.putInt(i*10);
+			}
+			buffer.putShort((short)type(i));
+			buffer.putShort((short)i);
+			buffer.putInt(value(i));
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void checkEvent(LinuxEvent event, int i) {
+		long nanos = ((1000L + i)*1000000 + i*10)*1000;
+		check(event.getNanos() == nanos, "Event " + i + ": time " + event.getNanos() + " != " + nanos);
+		check(event.getDescriptor().getType() == type(i), "Event " + i + ": type " + event.getDescriptor().getType() + " != " + type(i));
+		check(event.getDescriptor().getCode() == i, "Event " + i + ": code " + event.getDescriptor().getCode() + " != " + i);
+		check(event.getValue() == value(i), "Event " + i + ": value " + event.getValue() + " != " + value(i));
+	}
+
+	private static void testDecode(int num_events, int event_size) {
+		ByteBuffer records = record(num_events, event_size);
+		LinuxEvent event = new LinuxEvent();
+		for (int i = 0; i < num_events; i++) {
+			LinuxEventReader.decodeEvent(records, event_size, event);
+			checkEvent(event, i);
+		}
+		check(!records.hasRemaining(), records.remaining() + " bytes left after decoding");
+		System.out.println(String.format("decode %2d byte events %6d events ok", event_size, num_events));
+	}
+
+	private static File createFIFO() throws IOException, InterruptedException {
+		File file = File.createTempFile("input_events", ".fifo");
+		file.delete();
+		check(new ProcessBuilder("mkfifo", file.getPath()).start().waitFor() == 0, "mkfifo failed");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static void testFIFO(int num_events, int event_size) throws IOException, InterruptedException {
+		File file = createFIFO();
+		// opening a FIFO for reading and writing doesn't wait for a writer
+		long fd = LinuxEventDevice.nOpen(file.getPath(), true);
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			LinuxEventReader reader = new LinuxEventReader(fd, event_size, BUFFER_EVENTS);
+			LinuxEvent event = new LinuxEvent();
+			ByteBuffer records = record(num_events, event_size);
+			int next = 0;
+			// writes of an odd number of events leave part of a buffer for the next read
+			int chunk = (BUFFER_EVENTS + 1)*event_size;
+			while (records.hasRemaining()) {
+				int length = Math.min(chunk, records.remaining());
+				out.write(records.array(), records.position(), length);
+				records.position(records.position() + length);
+				int available = records.position()/event_size;
+				while (reader.read(event))
+					checkEvent(event, next++);
+				check(next == available, "Read " + next + " events with " + available + " written");
+			}
+			check(next == num_events, "Read " + next + " of " + num_events + " events");
+			System.out.println(String.format("fifo   %2d byte events %6d events ok", event_size, num_events));
+
+			num_events = BUFFER_EVENTS*2 + 1;
+			records = record(num_events, event_size);
+			out.write(records.array(), 0, records.limit());
+			Thread.currentThread().interrupt();
+			try {
+				for (int i = 0; i < num_events; i++) {
+					check(reader.read(event), "Interrupted read ended after " + i + " of " + num_events + " events");
+					checkEvent(event, i);
+				}
+				check(!reader.read(event), "Read more events than were written");
+				check(Thread.currentThread().isInterrupted(), "Reading cleared the interrupt status");
+			} finally {
+				Thread.interrupted();
+			}
+			// the file descriptor is still open and readable
+			out.write(records.array(), 0, event_size);
+			check(reader.read(event), "Read after an interrupt failed");
+			checkEvent(event, 0);
+			System.out.println("interrupted read keeps the device open ok");
+		} finally {
+			LinuxEventDevice.nClose(fd);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ClassNotFoundException {
+		int num_events = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		testDecode(num_events, 24);
+		testDecode(num_events, 16);
+		// loads the native library, which LinuxEventDevice needs to initialize
+		Class.forName("net.java.games.input.LinuxEnvironmentPlugin");
+		testFIFO(num_events, LinuxEventDevice.nGetEventSize());
+	}
+}
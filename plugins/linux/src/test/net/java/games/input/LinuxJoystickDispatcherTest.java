@@ -0,0 +1,125 @@
+/*
+ * LinuxJoystickDispatcherTest.java
+ */
+package net.java.games.input;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Feeds synthetic js_event values through LinuxJoystickDispatcher into a
+ * polling controller, the way LinuxJoystickDevice.poll() does. It checks that
+ * hat axes are delivered as POV changes with the right direction, and that
+ * dispatching button, axis and POV events allocates no memory, measured with
+ * the allocated bytes counter of the polling thread.
+ * Needs no joystick devices and no native library.
+ *
+ * Usage: LinuxJoystickDispatcherTest [polls]
+ */
+public class LinuxJoystickDispatcherTest {
+	private final static int HAT_X = 2;
+	private final static int HAT_Y = 3;
+	/* Hat positions fed in turn, with the POV direction each one must produce */
+	private final static int[][] HAT_POSITIONS = {
+		{-1, 0}, {-1, -1}, {0, -1}, {1, -1}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {0, 0}
+	};
+	private final static float[] HAT_DIRECTIONS = {
+		Component.POV.LEFT, Component.POV.UP_LEFT, Component.POV.UP, Component.POV.UP_RIGHT,
+		Component.POV.RIGHT, Component.POV.DOWN_RIGHT, Component.POV.DOWN, Component.POV.DOWN_LEFT, Component.POV.OFF
+	};
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	/* Dispatches one js_event of every kind per poll: a button, a stick axis and a hat axis */
+	private final static class JoystickController extends AbstractController {
+		private final LinuxJoystickDispatcher dispatcher;
+		private final LinuxJoystickEvent joystick_event = new LinuxJoystickEvent();
+		private int step;
+
+		public JoystickController(LinuxJoystickDispatcher dispatcher, Component[] components) {
+			super("js test", components, new Controller[]{}, new Rumbler[]{});
+			this.dispatcher = dispatcher;
+		}
+
+		protected final void pollDevice() {
+			int position = step%HAT_POSITIONS.length;
+			joystick_event.set(step, step & 1, LinuxJoystickDevice.JS_EVENT_BUTTON, 0);
+			dispatcher.dispatch(joystick_event, this);
+			joystick_event.set(step, (step*37)%LinuxJoystickDevice.AXIS_MAX_VALUE, LinuxJoystickDevice.JS_EVENT_AXIS, 0);
+			dispatcher.dispatch(joystick_event, this);
+			// only one hat axis changes per event, like on a real hat
+			int axis = (position & 1) == 0 ? HAT_X : HAT_Y;
+			int value = HAT_POSITIONS[position][axis == HAT_X ? 0 : 1]*LinuxJoystickDevice.AXIS_MAX_VALUE;
+			joystick_event.set(step, value, LinuxJoystickDevice.JS_EVENT_AXIS, axis);
+			dispatcher.dispatch(joystick_event, this);
+			value = HAT_POSITIONS[position][axis == HAT_X ? 1 : 0]*LinuxJoystickDevice.AXIS_MAX_VALUE;
+			joystick_event.set(step, value, LinuxJoystickDevice.JS_EVENT_AXIS, axis == HAT_X ? HAT_Y : HAT_X);
+			dispatcher.dispatch(joystick_event, this);
+			step++;
+		}
+
+		protected final boolean getNextDeviceEvent(Event event) {
+			return false;
+		}
+	}
+
+	public static void main(String[] args) {
+		int polls = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		LinuxJoystickDispatcher dispatcher = new LinuxJoystickDispatcher(1, 4);
+		LinuxJoystickButton button = new LinuxJoystickButton(Component.Identifier.Button._0);
+		dispatcher.registerButton(0, button);
+		LinuxJoystickAxis x = new LinuxJoystickAxis(Component.Identifier.Axis.X);
+		dispatcher.registerAxis(0, x);
+		LinuxJoystickAxis y = new LinuxJoystickAxis(Component.Identifier.Axis.Y);
+		dispatcher.registerAxis(1, y);
+		LinuxJoystickAxis hat_x = new LinuxJoystickAxis(Component.Identifier.Axis.X);
+		dispatcher.registerAxis(HAT_X, hat_x);
+		LinuxJoystickAxis hat_y = new LinuxJoystickAxis(Component.Identifier.Axis.Y);
+		dispatcher.registerAxis(HAT_Y, hat_y);
+		LinuxJoystickPOV pov = new LinuxJoystickPOV(Component.Identifier.Axis.POV, hat_x, hat_y);
+		dispatcher.registerPOV(pov);
+		JoystickController controller = new JoystickController(dispatcher, new Component[]{button, x, y, pov});
+		EventQueue queue = controller.getEventQueue();
+		Event event = new Event();
+
+		// the last POV event of every poll carries the hat's new direction
+		for (int i = 0; i < HAT_POSITIONS.length*2; i++) {
+			controller.poll();
+			float direction = Float.NaN;
+			while (queue.getNextEvent(event)) {
+				check(event.getComponent() != hat_x && event.getComponent() != hat_y, "Hat axis dispatched as a plain axis");
+				if (event.getComponent() == pov)
+					direction = event.getValue();
+			}
+			float expected = HAT_DIRECTIONS[i%HAT_POSITIONS.length];
+			check(direction == expected, "Hat " + HAT_POSITIONS[i%HAT_POSITIONS.length][0] + "," + HAT_POSITIONS[i%HAT_POSITIONS.length][1] + " dispatched POV " + direction + " != " + expected);
+			check(pov.getPollData() == expected, "POV polls " + pov.getPollData() + " != " + expected);
+		}
+		System.out.println("POV directions ok");
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread_id = Thread.currentThread().getId();
+		// warm up until the path is compiled
+		long events = 0;
+		for (int i = 0; i < polls; i++) {
+			controller.poll();
+			while (queue.getNextEvent(event))
+				events++;
+		}
+		events = 0;
+		long start_bytes = threads.getThreadAllocatedBytes(thread_id);
+		for (int i = 0; i < polls; i++) {
+			controller.poll();
+			while (queue.getNextEvent(event))
+				events++;
+		}
+		long bytes = threads.getThreadAllocatedBytes(thread_id) - start_bytes;
+		System.out.println(String.format("%d polls %d events %d bytes allocated, %.3f B/event", polls, events, bytes, (double)bytes/events));
+		check(events > polls, "Only " + events + " events dispatched in " + polls + " polls");
+		check(bytes == 0, "Dispatching allocated " + bytes + " bytes");
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * LinuxPollThroughputTest.java
+ */
+package net.java.games.input;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes events of one event device per thread, like 8 pads polled from 8
+ * threads, and reports the events/s delivered. Each device is fed recorded
+ * struct input_event frames through a FIFO, read natively like an evdev node,
+ * and drained with
+ * LinuxControllers.getNextDeviceEvent(), so the threads share nothing but the
+ * code path. Every decoded event is checked against the frames its device was
+ * fed, which fails if devices share scratch state without a common lock.
+ * The single threaded run is the baseline.
+ * Needs no evdev devices.
+ *
+ * Usage: LinuxPollThroughputTest [max threads] [millis per run]
+ */
+public class LinuxPollThroughputTest {
+	private final static int NUM_BUTTONS = 8;
+	/* Frames written per batch, each a button change, a REL_X motion and a SYN_REPORT */
+	private final static int FRAMES_PER_BATCH = 32;
+
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(1);
+	}
+
+	private final static class PollThread extends Thread {
+		private final int index;
+		private final FileOutputStream out;
+		private final LinuxEventDevice device;
+		private final int event_size = LinuxEventDevice.nGetEventSize();
+		private final ByteBuffer batch = ByteBuffer.allocate(FRAMES_PER_BATCH*3*event_size).order(ByteOrder.nativeOrder());
+		private final Event event = new Event();
+		private final CountDownLatch start;
+		private final long duration_nanos;
+		private final AtomicLong total;
+		private int next_frame;
+
+		public PollThread(int index, CountDownLatch start, long duration_nanos, AtomicLong total) throws IOException, InterruptedException {
+			this.index = index;
+			File fifo = File.createTempFile("pad" + index, ".fifo");
+			fifo.delete();
+			if (new ProcessBuilder("mkfifo", fifo.getPath()).start().waitFor() != 0)
+				fail("mkfifo failed");
+			fifo.deleteOnExit();
+			// opening a FIFO for reading and writing doesn't wait for a writer
+			long fd = LinuxEventDevice.nOpen(fifo.getPath(), true);
+			this.out = new FileOutputStream(fifo);
+			byte[] key_bits = new byte[NativeDefinitions.KEY_MAX/8 + 1];
+			for (int i = 0; i < NUM_BUTTONS; i++)
+				key_bits[(NativeDefinitions.BTN_GAMEPAD + i)/8] |= 1 << ((NativeDefinitions.BTN_GAMEPAD + i)%8);
+			byte[] rel_bits = new byte[NativeDefinitions.REL_MAX/8 + 1];
+			rel_bits[0] = 1 << NativeDefinitions.REL_X;
+			this.device = LinuxEventDevice.create("pad " + index, fd, key_bits, rel_bits);
+			List event_components = device.getComponents();
+			for (int i = 0; i < event_components.size(); i++) {
+				LinuxEventComponent event_component = (LinuxEventComponent)event_components.get(i);
+				device.registerComponent(event_component.getDescriptor(), new LinuxComponent(event_component));
+			}
+			this.start = start;
+			this.duration_nanos = duration_nanos;
+			this.total = total;
+		}
+
+		private void putEvent(int type, int code, int value) {
+			if (event_size == 24) {
+				batch.putLong(0);
+				batch.putLong(0);
+			} else {
+				batch.putInt(0);
+				batch.putInt(0);
+			}
+			batch.putShort((short)type);
+			batch.putShort((short)code);
+			batch.putInt(value);
+		}
+
+		private static int button(int frame) {
+			return NativeDefinitions.BTN_GAMEPAD + (frame/2)%NUM_BUTTONS;
+		}
+
+		/* The motion of each device is distinct, so events decoded for the wrong device are caught */
+		private int motion(int frame) {
+			return index*100000 + frame%100000;
+		}
+
+		private void writeBatch() throws IOException {
+			batch.clear();
+			for (int i = 0; i < FRAMES_PER_BATCH; i++) {
+				int frame = next_frame + i;
+				putEvent(NativeDefinitions.EV_KEY, button(frame), frame & 1);
+				putEvent(NativeDefinitions.EV_REL, NativeDefinitions.REL_X, motion(frame));
+				putEvent(NativeDefinitions.EV_SYN, NativeDefinitions.SYN_REPORT, 0);
+			}
+			out.write(batch.array(), 0, batch.position());
+		}
+
+		private void check(int frame, boolean is_button) {
+			LinuxEventComponent component = ((LinuxComponent)event.getComponent()).getComponent();
+			int code = component.getDescriptor().getCode();
+			float value = event.getValue();
+			if (is_button && (code != button(frame) || value != (frame & 1)))
+				fail(getName() + ": frame " + frame + " decoded as code " + code + " value " + value);
+			if (!is_button && (code != NativeDefinitions.REL_X || value != motion(frame)))
+				fail(getName() + ": frame " + frame + " decoded as code " + code + " value " + value);
+		}
+
+		private void readBatch() throws IOException {
+			for (int i = 0; i < FRAMES_PER_BATCH; i++) {
+				int frame = next_frame + i;
+				if (!LinuxControllers.getNextDeviceEvent(event, device))
+					fail(getName() + ": frame " + frame + " is missing its button event");
+				check(frame, true);
+				if (!LinuxControllers.getNextDeviceEvent(event, device))
+					fail(getName() + ": frame " + frame + " is missing its motion event");
+				check(frame, false);
+			}
+			if (LinuxControllers.getNextDeviceEvent(event, device))
+				fail(getName() + ": events decoded beyond the frames written");
+			next_frame += FRAMES_PER_BATCH;
+		}
+
+		public void run() {
+			try {
+				start.await();
+				long events = 0;
+				long end = System.nanoTime() + duration_nanos;
+				while (System.nanoTime() < end) {
+					writeBatch();
+					readBatch();
+					events += FRAMES_PER_BATCH*2;
+				}
+				total.addAndGet(events);
+				out.close();
+				device.close();
+			} catch (InterruptedException e) {
+				return;
+			} catch (IOException e) {
+				fail(getName() + ": " + e);
+			}
+		}
+	}
+
+	private static double run(int num_threads, long duration_millis) throws IOException, InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicLong total = new AtomicLong();
+		PollThread[] threads = new PollThread[num_threads];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new PollThread(i, start, duration_millis*1000000L, total);
+			threads[i].start();
+		}
+		start.countDown();
+		for (int i = 0; i < threads.length; i++)
+			threads[i].join();
+		return total.get()*1000.0/duration_millis;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ClassNotFoundException {
+		// loads the native library, which LinuxEventDevice needs to initialize
+		Class.forName("net.java.games.input.LinuxEnvironmentPlugin");
+		int max_threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		long duration = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + duration + " ms per run");
+		// warm up
+		run(1, duration/2);
+		double baseline = run(1, duration);
+		System.out.println(String.format("%2d thread  %12.0f events/s", 1, baseline));
+		for (int n = 2; n <= max_threads; n *= 2) {
+			double events = run(n, duration);
+			System.out.println(String.format("%2d threads %12.0f events/s %5.2fx", n, events, events/baseline));
+		}
+	}
+}